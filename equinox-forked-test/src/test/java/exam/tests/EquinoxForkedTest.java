@@ -3,7 +3,6 @@ package exam.tests;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -13,6 +12,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.ops4j.pax.exam.Configuration;
 import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamFactory;
 import org.ops4j.pax.exam.Option;
 import org.ops4j.pax.exam.junit.PaxExam;
 import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
@@ -25,14 +25,17 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.wiring.FrameworkWiring;
 import org.junit.Assert;
 
+import exam.support.ForkDirectories;
+import exam.support.WarmTestContainerFactory;
+
 /**
  * @author cnoelle
  */
 @RunWith(PaxExam.class)
 @ExamReactorStrategy(PerClass.class)
+@ExamFactory(WarmTestContainerFactory.class)
 public class EquinoxForkedTest {
 
-	private static final Path osgiStorage = Paths.get("data/osgi-storage");
 	private static final AtomicInteger bundleCount = new AtomicInteger(0);
 	
 	@Inject
@@ -40,6 +43,7 @@ public class EquinoxForkedTest {
 
 	@Configuration
 	public Option[] configuration() throws IOException {
+		final Path osgiStorage = ForkDirectories.dataDirectory().resolve("osgi-storage");
 		return new Option[] {
 				CoreOptions.cleanCaches(),
 				CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE).value(osgiStorage.toString()), // FIXME
@@ -0,0 +1,193 @@
+package exam.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.options.ProvisionOption;
+import org.ops4j.pax.exam.options.UrlProvisionOption;
+import org.ops4j.pax.exam.spi.DefaultExamSystem;
+
+/**
+ * A persistent store of the bundles resolved by the {@link ArtifactResolver}, shared by all modules and runs.
+ * Each artifact is copied to the cache folder once, named after the SHA-256 hash of its content, and the
+ * index file {@value #INDEX_FILE} maps its mvn: URL to the stored file. Later runs find the artifacts in the
+ * index and do not need Maven resolution at all, so they work offline without further configuration.
+ * The {@link WarmTestContainerFactory} also replaces the mvn: URLs of other provision options, such as
+ * {@link CoreOptions#mavenBundle(String, String, String)}, by the cached file: URLs.<br>
+ * The cache is used if the system property {@value #CACHE_PROPERTY} is set to true. Its folder is
+ * {@value #DEFAULT_CACHE_DIR} in the user's home folder by default, configurable via the system property
+ * {@value #CACHE_DIR_PROPERTY}. Snapshots and version ranges are not cached. Delete the index file, or the
+ * whole folder, to enforce a new resolution.
+ */
+public final class ArtifactCache {
+
+	public static final String CACHE_PROPERTY = "exam.support.cache";
+	public static final String CACHE_DIR_PROPERTY = "exam.support.cache.dir";
+	public static final String DEFAULT_CACHE_DIR = ".m2/exam-support/artifact-cache";
+	public static final String INDEX_FILE = "index.properties";
+	private static final String LOCK_FILE = "index.lock";
+	// anything that may resolve to different artifacts over time
+	private static final Pattern VOLATILE_VERSION = Pattern.compile(".*([\\[\\(,]|LATEST|RELEASE|SNAPSHOT).*");
+	private static Properties index;
+
+	private ArtifactCache() {}
+
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(CACHE_PROPERTY);
+	}
+
+	static Path cacheFolder() {
+		final String dir = System.getProperty(CACHE_DIR_PROPERTY);
+		return dir != null ? Paths.get(dir) : Paths.get(System.getProperty("user.home")).resolve(DEFAULT_CACHE_DIR);
+	}
+
+	static boolean isCacheable(String mvnUrl) {
+		return mvnUrl.startsWith("mvn:") && !VOLATILE_VERSION.matcher(mvnUrl).matches();
+	}
+
+	/**
+	 * @return
+	 * 		a file: URL of the cached artifact, or null if it is not in the cache
+	 */
+	static synchronized String lookup(String mvnUrl) {
+		if (index == null)
+			index = readIndex(cacheFolder());
+		final String file = index.getProperty(mvnUrl);
+		if (file == null)
+			return null;
+		final Path path = cacheFolder().resolve(file);
+		return Files.isRegularFile(path) ? path.toAbsolutePath().toUri().toString() : null;
+	}
+
+	/**
+	 * Copy the artifact to the cache and add it to the index.
+	 * @return
+	 * 		a file: URL of the cached artifact
+	 */
+	static synchronized String store(String mvnUrl, Path artifact) throws IOException {
+		final Path folder = cacheFolder();
+		Files.createDirectories(folder);
+		final Path tmp = Files.createTempFile(folder, "artifact-", ".tmp");
+		final String file;
+		try {
+			file = copy(artifact, tmp) + ".jar";
+			final Path target = folder.resolve(file);
+			if (!Files.isRegularFile(target))
+				Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		// other JVMs may update the index concurrently
+		try (FileChannel channel = FileChannel.open(folder.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			final FileLock lock = channel.lock();
+			try {
+				index = readIndex(folder);
+				index.setProperty(mvnUrl, file);
+				final Path indexTmp = Files.createTempFile(folder, "index-", ".tmp");
+				try (Writer writer = Files.newBufferedWriter(indexTmp, StandardCharsets.UTF_8)) {
+					index.store(writer, "mvn: URL -> cached artifact");
+				}
+				Files.move(indexTmp, folder.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				lock.release();
+			}
+		}
+		return folder.resolve(file).toAbsolutePath().toUri().toString();
+	}
+
+	/**
+	 * Replace the mvn: URLs of all provision options by the file: URLs of the cached artifacts.
+	 * Options that cannot be resolved are kept as they are.
+	 */
+	static ExamSystem resolveOptions(ExamSystem system) {
+		final Option[] options = OptionUtils.expand(system.getOptions(Option.class));
+		final List<Option> resolved = new ArrayList<>(options.length);
+		boolean changed = false;
+		for (Option option : options) {
+			if (option instanceof ProvisionOption) {
+				final ProvisionOption<?> provision = (ProvisionOption<?>) option;
+				final String url = provision.getURL();
+				if (isCacheable(url)) {
+					final String file = ArtifactResolver.resolve(url);
+					if (!file.equals(url)) {
+						final UrlProvisionOption replacement = CoreOptions.bundle(file)
+								.start(provision.shouldStart())
+								.update(provision.shouldUpdate())
+								.startLevel(provision.getStartLevel());
+						resolved.add(replacement);
+						changed = true;
+						continue;
+					}
+				}
+			}
+			resolved.add(option);
+		}
+		if (!changed)
+			return system;
+		try {
+			return DefaultExamSystem.create(resolved.toArray(new Option[resolved.size()]));
+		} catch (IOException e) {
+			throw new TestContainerException("Failed to replace the mvn: URLs", e);
+		}
+	}
+
+	private static Properties readIndex(Path folder) {
+		final Properties properties = new Properties();
+		final Path file = folder.resolve(INDEX_FILE);
+		if (Files.isRegularFile(file)) {
+			try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				properties.load(reader);
+			} catch (IOException e) {
+				System.err.println("Failed to read the artifact cache index " + file + ": " + e);
+			}
+		}
+		return properties;
+	}
+
+	// copies the file and returns the hex encoded SHA-256 hash of its content
+	private static String copy(Path source, Path target) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest);
+				OutputStream out = Files.newOutputStream(target)) {
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,87 @@
+package exam.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.MavenResolvers;
+
+/**
+ * Resolves Maven coordinates to local file URLs. Each artifact is resolved only once per JVM, 
+ * the containers then install the bundles directly from the local repository instead of going 
+ * through the mvn: URL handler again for every test class. If an artifact cannot be resolved 
+ * the mvn: URL is returned, so the container reports the problem as before.<br>
+ * Resolved artifacts are kept in the {@link ArtifactCache}, which makes the resolution a lookup
+ * in later runs.
+ */
+public final class ArtifactResolver {
+
+	private static final String PID = "org.ops4j.pax.url.mvn";
+	private static final Map<String, String> urls = new ConcurrentHashMap<>();
+	private static final AtomicLong resolutionNanos = new AtomicLong();
+	private static MavenResolver resolver;
+
+	private ArtifactResolver() {}
+
+	public static String mvnUrl(String groupId, String artifactId, String version) {
+		return "mvn:" + groupId + "/" + artifactId + "/" + version;
+	}
+
+	/**
+	 * @return
+	 * 		a file: URL pointing to the artifact in the local repository, or the mvn: URL
+	 * 		if the artifact could not be resolved
+	 */
+	public static String resolve(String groupId, String artifactId, String version) {
+		return resolve(mvnUrl(groupId, artifactId, version));
+	}
+
+	/**
+	 * @param mvnUrl
+	 * 		a mvn: URL
+	 * @return
+	 * 		a file: URL pointing to the artifact, or the mvn: URL if the artifact could not be resolved
+	 */
+	static String resolve(String mvnUrl) {
+		return urls.computeIfAbsent(mvnUrl, ArtifactResolver::resolveUrl);
+	}
+
+	private static String resolveUrl(String mvnUrl) {
+		final long start = System.nanoTime();
+		final boolean cached = ArtifactCache.isEnabled() && ArtifactCache.isCacheable(mvnUrl);
+		try {
+			if (cached) {
+				final String url = ArtifactCache.lookup(mvnUrl);
+				if (url != null)
+					return url;
+			}
+			final File file = getResolver().resolve(mvnUrl);
+			if (file != null && file.isFile())
+				return cached ? ArtifactCache.store(mvnUrl, file.toPath()) : file.toURI().toString();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to resolve " + mvnUrl + ": " + e);
+		} finally {
+			resolutionNanos.addAndGet(System.nanoTime() - start);
+		}
+		return mvnUrl;
+	}
+
+	/**
+	 * @return
+	 * 		the time spent resolving artifacts in this JVM so far
+	 */
+	static long getResolutionMillis() {
+		return resolutionNanos.get() / 1_000_000;
+	}
+
+	private static synchronized MavenResolver getResolver() {
+		if (resolver == null)
+			resolver = MavenResolvers.createMavenResolver(new Hashtable<String, String>(), PID);
+		return resolver;
+	}
+
+}
@@ -0,0 +1,61 @@
+package exam.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.Option;
+import org.osgi.framework.Constants;
+
+import exam.support.bench.Benchmark;
+
+/**
+ * Options for benchmarks running inside the container, see {@link Benchmark}.
+ */
+public final class BenchmarkOptions {
+
+	/**
+	 * System properties starting with this prefix are passed on to the container.
+	 */
+	public static final String PROPERTY_PREFIX = "exam.benchmark.";
+	/**
+	 * Set this system property to true to run the benchmarks with the security manager and
+	 * OSGi security enabled. Like all properties starting with {@value #PROPERTY_PREFIX}, it is
+	 * passed on to the container, so the test code can check it via {@link Boolean#getBoolean(String)}.
+	 */
+	public static final String SECURE_PROPERTY = PROPERTY_PREFIX + "secure";
+
+	private BenchmarkOptions() {}
+
+	/**
+	 * @return
+	 * 		the bundle exporting the benchmark harness, and the system properties starting with
+	 * 		{@value #PROPERTY_PREFIX}, which would otherwise not reach a forked container
+	 */
+	public static Option benchmarkSupport() {
+		final List<Option> options = new ArrayList<>();
+		options.add(SupportBundles.benchmarkBundle());
+		System.getProperties().stringPropertyNames().stream()
+			.filter(key -> key.startsWith(PROPERTY_PREFIX))
+			.sorted()
+			.forEach(key -> options.add(CoreOptions.systemProperty(key).value(System.getProperty(key))));
+		return CoreOptions.composite(options.toArray(new Option[options.size()]));
+	}
+
+	/**
+	 * @param additional
+	 * 		further options required by the secure variant only, e.g. framework specific security extensions
+	 * @return
+	 * 		OSGi security and the security manager with the policy file <code>config/all.policy</code>,
+	 * 		plus the additional options, if the system property {@value #SECURE_PROPERTY} is true; no options otherwise
+	 */
+	public static Option securityOptions(Option... additional) {
+		final List<Option> options = new ArrayList<>();
+		options.add(CoreOptions.frameworkProperty(Constants.FRAMEWORK_SECURITY).value(Constants.FRAMEWORK_SECURITY_OSGI));
+		options.add(CoreOptions.vmOption("-Djava.security.policy=config/all.policy"));
+		options.addAll(Arrays.asList(additional));
+		return CoreOptions.when(Boolean.getBoolean(SECURE_PROPERTY)).useOptions(options.toArray(new Option[options.size()]));
+	}
+
+}
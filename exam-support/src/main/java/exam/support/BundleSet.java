@@ -0,0 +1,126 @@
+package exam.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.options.UrlProvisionOption;
+
+/**
+ * An ordered set of Maven bundles. Every artifact (groupId and artifactId) can be added only once;
+ * adding it again with the same version is ignored, adding it with a different version fails, 
+ * so that version drift between test configurations cannot creep in. The bundles are provisioned 
+ * from file: URLs resolved by the {@link ArtifactResolver}.
+ */
+public class BundleSet {
+
+	private final Map<String, Entry> bundles = new LinkedHashMap<>();
+	private volatile Option[] options;
+
+	public synchronized Entry add(String groupId, String artifactId, String version) {
+		final String key = groupId + ":" + artifactId;
+		final Entry existing = bundles.get(key);
+		if (existing != null) {
+			if (!existing.version.equals(version))
+				throw new IllegalArgumentException("Conflicting versions for " + key + ": " + existing.version + " and " + version);
+			return existing;
+		}
+		final Entry entry = new Entry(groupId, artifactId, version);
+		bundles.put(key, entry);
+		options = null;
+		return entry;
+	}
+
+	public synchronized Collection<Entry> entries() {
+		return new ArrayList<>(bundles.values());
+	}
+
+	/**
+	 * @return
+	 * 		the provision options for this set; the artifact URLs are resolved on the first call only
+	 */
+	public Option[] options() {
+		Option[] options = this.options;
+		if (options == null) {
+			synchronized (this) {
+				final List<Option> list = new ArrayList<>(bundles.size());
+				for (Entry e : bundles.values()) {
+					list.add(e.toOption());
+				}
+				options = list.toArray(new Option[list.size()]);
+				this.options = options;
+			}
+		}
+		return options.clone();
+	}
+
+	public Option toOption() {
+		return CoreOptions.composite(options());
+	}
+
+	public static class Entry {
+
+		private final String groupId;
+		private final String artifactId;
+		private final String version;
+		private Integer startLevel;
+		private Boolean start;
+
+		private Entry(String groupId, String artifactId, String version) {
+			this.groupId = groupId;
+			this.artifactId = artifactId;
+			this.version = version;
+		}
+
+		public Entry startLevel(int startLevel) {
+			this.startLevel = startLevel;
+			return this;
+		}
+
+		public Entry start() {
+			this.start = true;
+			return this;
+		}
+
+		public Entry noStart() {
+			this.start = false;
+			return this;
+		}
+
+		public String getGroupId() {
+			return groupId;
+		}
+
+		public String getArtifactId() {
+			return artifactId;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		public Integer getStartLevel() {
+			return startLevel;
+		}
+
+		UrlProvisionOption toOption() {
+			final UrlProvisionOption option = CoreOptions.bundle(ArtifactResolver.resolve(groupId, artifactId, version));
+			if (startLevel != null)
+				option.startLevel(startLevel);
+			if (start != null)
+				option.start(start);
+			return option;
+		}
+
+		@Override
+		public String toString() {
+			return ArtifactResolver.mvnUrl(groupId, artifactId, version);
+		}
+
+	}
+
+}
@@ -0,0 +1,155 @@
+package exam.support;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.ops4j.pax.exam.TestAddress;
+import org.ops4j.pax.exam.TestContainer;
+import org.ops4j.pax.exam.TestContainerException;
+
+/**
+ * Invokes the test methods of a forked container via the connection opened by its endpoint bundle,
+ * instead of RMI. See {@link InvocationChannel}.
+ */
+final class ChannelTestContainer implements TestContainer {
+
+	private final TestContainer delegate;
+	private final ServerSocket server;
+	private final long timeout;
+	private Socket socket;
+	private ObjectOutputStream out;
+	private ObjectInputStream in;
+
+	ChannelTestContainer(TestContainer delegate, ServerSocket server, long timeout) {
+		this.delegate = delegate;
+		this.server = server;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public synchronized TestContainer start() {
+		delegate.start();
+		// the endpoint bundle connects at start level 1, so the connection is usually waiting already
+		try {
+			server.setSoTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+			socket = server.accept();
+			socket.setTcpNoDelay(true);
+			out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.flush();
+			in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+		} catch (SocketTimeoutException e) {
+			System.err.println("Invocation endpoint of " + delegate + " did not connect within " + timeout + "ms, using RMI");
+			closeChannel();
+		} catch (IOException e) {
+			System.err.println("Failed to connect to the invocation endpoint of " + delegate + ", using RMI: " + e);
+			closeChannel();
+		}
+		return this;
+	}
+
+	@Override
+	public long install(InputStream stream) {
+		return delegate.install(stream);
+	}
+
+	@Override
+	public long install(String location, InputStream stream) {
+		return delegate.install(location, stream);
+	}
+
+	@Override
+	public long installProbe(InputStream stream) {
+		return delegate.installProbe(stream);
+	}
+
+	@Override
+	public void uninstallProbe() {
+		delegate.uninstallProbe();
+	}
+
+	@Override
+	public void call(TestAddress address) {
+		synchronized (this) {
+			if (socket != null) {
+				invoke(address);
+				return;
+			}
+		}
+		delegate.call(address);
+	}
+
+	// only called while holding the lock
+	private void invoke(TestAddress address) {
+		final boolean success;
+		final byte[] serialized;
+		final String stackTrace;
+		try {
+			out.writeUTF(address.root().identifier());
+			out.writeObject(address.arguments());
+			out.reset();
+			out.flush();
+			success = in.readBoolean();
+			if (success)
+				return;
+			serialized = (byte[]) in.readObject();
+			stackTrace = (String) in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			// the state of the test is unknown, so the invocation is not repeated via RMI
+			closeChannel();
+			throw new TestContainerException("Invocation channel of " + delegate + " failed", e);
+		}
+		throw new TestContainerException(deserialize(serialized, stackTrace));
+	}
+
+	// the exception class may not be available on the host, in which case only the stack trace is kept
+	private static Throwable deserialize(byte[] serialized, String stackTrace) {
+		if (serialized != null) {
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+				return (Throwable) in.readObject();
+			} catch (IOException | ClassNotFoundException | ClassCastException e) {
+				// fall through
+			}
+		}
+		return new TestContainerException("Test failed in the container:\n" + stackTrace);
+	}
+
+	@Override
+	public synchronized TestContainer stop() {
+		closeChannel();
+		close(server);
+		delegate.stop();
+		return this;
+	}
+
+	private void closeChannel() {
+		close(out);
+		close(in);
+		close(socket);
+		out = null;
+		in = null;
+		socket = null;
+	}
+
+	static void close(Closeable closeable) {
+		if (closeable == null)
+			return;
+		try {
+			closeable.close();
+		} catch (IOException ignore) {}
+	}
+
+	@Override
+	public String toString() {
+		return "Channel" + delegate;
+	}
+
+}
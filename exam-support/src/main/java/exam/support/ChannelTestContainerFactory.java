@@ -0,0 +1,53 @@
+package exam.support;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.TestContainer;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.TestContainerFactory;
+import org.ops4j.pax.exam.spi.DefaultExamSystem;
+
+import exam.support.channel.ProbeInvocationEndpoint;
+
+/**
+ * Adds the invocation endpoint bundle to the forked containers created by the delegate factory,
+ * together with the port it connects to. See {@link InvocationChannel}.
+ */
+final class ChannelTestContainerFactory extends DelegatingTestContainerFactory {
+
+	ChannelTestContainerFactory(TestContainerFactory delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public TestContainer[] create(ExamSystem system) {
+		final long timeout = system.getTimeout().getValue();
+		ServerSocket server = null;
+		final ExamSystem connected;
+		try {
+			server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+			connected = DefaultExamSystem.create(OptionUtils.combine(system.getOptions(Option.class),
+					InvocationChannel.endpointBundle(),
+					CoreOptions.frameworkProperty(ProbeInvocationEndpoint.PORT_PROPERTY).value(String.valueOf(server.getLocalPort())),
+					CoreOptions.frameworkProperty(ProbeInvocationEndpoint.TIMEOUT_PROPERTY).value(String.valueOf(timeout))));
+		} catch (IOException e) {
+			ChannelTestContainer.close(server);
+			throw new TestContainerException("Failed to open the invocation channel", e);
+		}
+		final TestContainer[] containers = delegate.create(connected);
+		// usually there is only one container, otherwise the endpoints could not be told apart
+		if (containers.length != 1) {
+			ChannelTestContainer.close(server);
+			return containers;
+		}
+		containers[0] = new ChannelTestContainer(containers[0], server, timeout);
+		return containers;
+	}
+
+}
@@ -0,0 +1,73 @@
+package exam.support;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.spi.DefaultExamSystem;
+
+import exam.support.profiling.ClassLoadingProfiler;
+
+/**
+ * Class loading and bundle activation profiles of the test containers. If the system property
+ * {@value #PROFILE_PROPERTY} is set to true, the {@link WarmTestContainerFactory} installs a profiler
+ * bundle at start level 1 into every container, which registers a weaving hook in order to measure
+ * the classes defined by each bundle class loader, and tracks the bundle activations. When the
+ * framework stops, it writes a flame graph input file (.folded) and a CSV file with the numbers
+ * per bundle to {@value #REPORT_DIR}, see {@link ClassLoadingProfiler}.
+ */
+public final class ClassLoadingProfiles {
+
+	public static final String PROFILE_PROPERTY = "exam.support.classloading";
+	public static final String REPORT_DIR = "target/class-loading";
+	private static final String PROFILER_BSN = "exam.support.classloading-profiler";
+	private static final AtomicInteger profileCounter = new AtomicInteger();
+	private static Option profilerBundle;
+
+	private ClassLoadingProfiles() {}
+
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(PROFILE_PROPERTY);
+	}
+
+	/**
+	 * @return
+	 * 		the profiler bundle, see {@link SupportBundles}
+	 */
+	static synchronized Option profilerBundle() {
+		if (profilerBundle == null) {
+			profilerBundle = SupportBundles.activatorBundle(PROFILER_BSN,
+					"org.osgi.framework;version=\"[1.8,2)\",org.osgi.framework.hooks.weaving;version=\"[1.1,2)\","
+					+ "org.osgi.framework.wiring;version=\"[1.2,2)\"",
+					ClassLoadingProfiler.class.getName(), ClassLoadingProfiler.class).startLevel(1).start();
+		}
+		return profilerBundle;
+	}
+
+	/**
+	 * @return
+	 * 		the system with the profiler bundle and the location of its output files
+	 */
+	static ExamSystem addProfiler(ExamSystem system) {
+		final Path folder = ForkDirectories.resolve(Paths.get(REPORT_DIR)).toAbsolutePath();
+		final String name = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + profileCounter.incrementAndGet();
+		try {
+			Files.createDirectories(folder);
+			return DefaultExamSystem.create(OptionUtils.combine(system.getOptions(Option.class),
+					profilerBundle(),
+					CoreOptions.frameworkProperty(ClassLoadingProfiler.FILE_PROPERTY).value(folder.resolve(name).toString())));
+		} catch (IOException e) {
+			throw new TestContainerException("Failed to add the class loading profiler", e);
+		}
+	}
+
+}
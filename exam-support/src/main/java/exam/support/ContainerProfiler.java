@@ -0,0 +1,370 @@
+package exam.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.exam.TestContainer;
+
+/**
+ * Measures what the native and forked containers cost. Enabled by setting the system property
+ * {@value #PROFILE_PROPERTY} to an output folder, e.g. via the Maven profile <code>container-profile</code>,
+ * which uses <code>target/container-profiles</code> of the parent project for all modules.
+ * The {@link WarmTestContainerFactory} then measures for every test class the container start
+ * (cold or reused), the probe build and installation, each test method invocation (for the forked
+ * container a round trip via RMI) and the probe removal, and finally the teardown of the containers.
+ * The spawn time of an empty JVM is measured once per test JVM, since it is contained in every
+ * start of a forked container.<br>
+ * When the JVM exits, one CSV file per module and container type is written to the output folder, with one
+ * line per test class; the final teardown of the warm containers is written as a line without test class.
+ * Modules whose names only differ in <code>native</code> and <code>forked</code>, such as felix-native-test
+ * and felix-forked-test, are considered the same scenario, and so are test classes such as FelixNativeTest and
+ * FelixForkedTest; as soon as both modules have been profiled, the file {@value #RECOMMENDATION_FILE} lists the
+ * costs of both containers for the test classes that both modules ran, and recommends the cheaper one.
+ * Test classes that only one of the modules ran are listed, but not compared.
+ */
+public final class ContainerProfiler {
+
+	public static final String PROFILE_PROPERTY = "exam.support.profile";
+	public static final String RECOMMENDATION_FILE = "recommendation.csv";
+	static final String NATIVE = "native";
+	static final String FORKED = "forked";
+	private static final String HEADER = "module,fork,scenario,container,testClass,testClasses,coldStarts,startMs,probeBuildMs,"
+			+ "probeInstallMs,calls,callMs,callMinMs,probeUninstallMs,teardowns,teardownMs,jvmSpawnMs,totalMs";
+	private static final int JVM_SPAWN_RUNS = 3;
+	private static final List<Profile> profiles = new ArrayList<>();
+	// the final teardown of the warm containers, not related to a test class
+	private static final Profile shutdown = new Profile();
+	private static volatile String container;
+
+	private ContainerProfiler() {}
+
+	public static boolean isEnabled() {
+		final String dir = System.getProperty(PROFILE_PROPERTY);
+		return dir != null && !dir.trim().isEmpty() && !"false".equalsIgnoreCase(dir.trim());
+	}
+
+	/**
+	 * @param containers
+	 * 		the containers for one test class; replaced by their profiled wrappers
+	 * @param factoryName
+	 * 		class name of the Pax Exam container factory, which determines the container type
+	 * @param warm
+	 * 		true if stopping the containers only removes the probe
+	 */
+	static TestContainer[] wrap(TestContainer[] containers, String factoryName, boolean warm) {
+		container = containerType(factoryName);
+		final Profile profile = new Profile();
+		synchronized (profiles) {
+			profiles.add(profile);
+		}
+		final TestContainer[] profiled = new TestContainer[containers.length];
+		for (int i = 0; i < containers.length; i++) {
+			profiled[i] = new ProfiledTestContainer(containers[i], profile, warm);
+		}
+		return profiled;
+	}
+
+	/**
+	 * Record the final shutdown of a warm container.
+	 */
+	static void teardown(long nanos) {
+		shutdown.stopped(nanos);
+	}
+
+	static String containerType(String factoryName) {
+		if (factoryName.contains("Native"))
+			return NATIVE;
+		if (factoryName.contains("Forked"))
+			return FORKED;
+		return factoryName.substring(factoryName.lastIndexOf('.') + 1);
+	}
+
+	/**
+	 * @return
+	 * 		the module name without the container type, e.g. felix-ogema for felix-ogema-native
+	 */
+	static String scenario(String module) {
+		return Arrays.stream(module.split("-"))
+			.filter(token -> !token.equals(NATIVE) && !token.equals(FORKED))
+			.collect(Collectors.joining("-"));
+	}
+
+	/**
+	 * @return
+	 * 		the test class name without the container type, e.g. exam.tests.FelixTest for exam.tests.FelixNativeTest
+	 */
+	static String testKey(String testClass) {
+		final int idx = testClass.lastIndexOf('.') + 1;
+		return testClass.substring(0, idx) + testClass.substring(idx).replace("Native", "").replace("Forked", "");
+	}
+
+	/**
+	 * Write the profile of this JVM and update the recommendation. Called on JVM shutdown, after
+	 * the warm containers have been stopped.
+	 */
+	static void write() {
+		final List<Profile> profiles;
+		synchronized (ContainerProfiler.profiles) {
+			profiles = new ArrayList<>(ContainerProfiler.profiles);
+		}
+		if (!isEnabled() || profiles.isEmpty())
+			return;
+		final Path dir = Paths.get(System.getProperty(PROFILE_PROPERTY).trim());
+		final String module = Paths.get("").toAbsolutePath().getFileName().toString();
+		final String fork = ForkDirectories.forkId();
+		final String container = ContainerProfiler.container;
+		final long jvmSpawnMillis = FORKED.equals(container) ? measureJvmSpawn() : 0;
+		final List<String> rows = new ArrayList<>();
+		rows.add(HEADER);
+		// test classes that are not the first in their container reuse it, so the order of the lines matters
+		for (Profile profile : profiles) {
+			if (profile.hasData())
+				rows.add(profile.toCsv(module, fork, scenario(module), container, jvmSpawnMillis));
+		}
+		if (shutdown.hasTeardowns())
+			rows.add(shutdown.toCsv(module, fork, scenario(module), container, jvmSpawnMillis));
+		// some modules run the same tests in a native and a forked container
+		final String name = module + "-" + container + (fork == null ? "" : "-fork-" + fork);
+		try {
+			Files.createDirectories(dir);
+			Files.write(dir.resolve(name + ".csv"), rows, StandardCharsets.UTF_8);
+			recommend(dir);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to write container profile: " + e);
+		}
+	}
+
+	// the fastest of a few runs of java -version with the Java installation of this JVM
+	private static long measureJvmSpawn() {
+		final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < JVM_SPAWN_RUNS; i++) {
+			final long t0 = System.nanoTime();
+			try {
+				final Process process = new ProcessBuilder(java, "-version").redirectErrorStream(true).start();
+				try (InputStream in = process.getInputStream()) {
+					final byte[] buffer = new byte[1024];
+					while (in.read(buffer) >= 0) {
+						// discard the output
+					}
+				}
+				process.waitFor();
+			} catch (IOException e) {
+				return -1;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return -1;
+			}
+			min = Math.min(min, System.nanoTime() - t0);
+		}
+		return min / 1_000_000;
+	}
+
+	/**
+	 * Compare the profiles of the native and forked modules in the folder, per scenario, and write
+	 * {@value #RECOMMENDATION_FILE}. Only the test classes that both modules ran are compared; the final
+	 * teardown of the warm containers is added per cold start of these test classes. Profiles of parallel
+	 * forks of the same module are summed up.
+	 */
+	static void recommend(Path dir) throws IOException {
+		// scenario -> container type -> test class (empty for the final teardown) -> summed profile
+		final Map<String, Map<String, Map<String, Map<String, String>>>> scenarios = new TreeMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.csv")) {
+			for (Path file : files) {
+				if (file.getFileName().toString().equals(RECOMMENDATION_FILE))
+					continue;
+				final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+				if (lines.size() < 2)
+					continue;
+				final String[] header = lines.get(0).split(",");
+				for (String line : lines.subList(1, lines.size())) {
+					final String[] values = line.split(",", -1);
+					final Map<String, String> row = new LinkedHashMap<>();
+					for (int i = 0; i < header.length && i < values.length; i++) {
+						row.put(header[i], values[i]);
+					}
+					scenarios.computeIfAbsent(row.get("scenario"), s -> new TreeMap<>())
+						.computeIfAbsent(row.get("container"), c -> new TreeMap<>())
+						.merge(testKey(row.getOrDefault("testClass", "")), row, ContainerProfiler::sum);
+				}
+			}
+		}
+		final List<String> lines = new ArrayList<>();
+		lines.add("scenario,nativeModule,forkedModule,testClasses,nativeOnlyTestClasses,forkedOnlyTestClasses,nativeTotalMs,forkedTotalMs,"
+				+ "forkOverheadMs,startOverheadMs,probeOverheadMs,rmiRoundTripMs,teardownOverheadMs,recommended");
+		for (Map.Entry<String, Map<String, Map<String, Map<String, String>>>> entry : scenarios.entrySet()) {
+			final Map<String, Map<String, String>> nativeClasses = entry.getValue().get(NATIVE);
+			final Map<String, Map<String, String>> forkedClasses = entry.getValue().get(FORKED);
+			if (nativeClasses == null || forkedClasses == null)
+				continue;
+			final Set<String> common = new TreeSet<>(nativeClasses.keySet());
+			common.retainAll(forkedClasses.keySet());
+			common.remove("");
+			final Map<String, String> nat = total(nativeClasses, common);
+			final Map<String, String> forked = total(forkedClasses, common);
+			final String nativeOnly = unmatched(nativeClasses, common);
+			final String forkedOnly = unmatched(forkedClasses, common);
+			final long nativeTotal = value(nat, "totalMs");
+			final long forkedTotal = value(forked, "totalMs");
+			final long probeOverhead = value(forked, "probeBuildMs") + value(forked, "probeInstallMs")
+					- value(nat, "probeBuildMs") - value(nat, "probeInstallMs");
+			// the cheapest invocation is usually an empty test method, i.e. mostly invocation overhead
+			final long rmiRoundTrip = value(forked, "callMinMs") - value(nat, "callMinMs");
+			final String recommended = common.isEmpty() ? "" : forkedTotal < nativeTotal ? FORKED : NATIVE;
+			lines.add(entry.getKey() + "," + nat.get("module") + "," + forked.get("module") + "," + common.size() + ","
+					+ nativeOnly + "," + forkedOnly + "," + nativeTotal + "," + forkedTotal + "," + (forkedTotal - nativeTotal) + ","
+					+ (value(forked, "startMs") - value(nat, "startMs")) + "," + probeOverhead + "," + rmiRoundTrip + ","
+					+ (value(forked, "teardownMs") - value(nat, "teardownMs")) + "," + recommended);
+			if (common.isEmpty()) {
+				System.out.println("   Container profile " + entry.getKey() + ": " + nat.get("module") + " and " + forked.get("module")
+						+ " have no test classes in common, no recommendation");
+				continue;
+			}
+			System.out.println("   Container profile " + entry.getKey() + ": native " + nativeTotal + "ms (" + nat.get("module")
+					+ "), forked " + forkedTotal + "ms (" + forked.get("module") + ") for " + common.size() + " test classes, recommended: "
+					+ recommended + (nativeOnly.isEmpty() && forkedOnly.isEmpty() ? ""
+						: "; not compared: " + (nativeOnly.isEmpty() || forkedOnly.isEmpty() ? nativeOnly + forkedOnly : nativeOnly + ";" + forkedOnly)));
+		}
+		Files.write(dir.resolve(RECOMMENDATION_FILE), lines, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Sum up the profiles of the given test classes, plus the share of the final teardown of the warm
+	 * containers, i.e. the average teardown time per cold start of these test classes.
+	 */
+	private static Map<String, String> total(Map<String, Map<String, String>> classes, Set<String> testClasses) {
+		Map<String, String> result = null;
+		for (String testClass : testClasses) {
+			final Map<String, String> row = classes.get(testClass);
+			result = result == null ? new LinkedHashMap<>(row) : sum(result, row);
+		}
+		if (result == null) {
+			result = new LinkedHashMap<>();
+			result.put("module", classes.values().iterator().next().get("module"));
+			return result;
+		}
+		final Map<String, String> shutdown = classes.get("");
+		if (shutdown != null && value(shutdown, "teardowns") > 0) {
+			final long share = value(shutdown, "teardownMs") * value(result, "coldStarts") / value(shutdown, "teardowns");
+			result.put("teardownMs", String.valueOf(value(result, "teardownMs") + share));
+			result.put("totalMs", String.valueOf(value(result, "totalMs") + share));
+		}
+		return result;
+	}
+
+	// the test classes that are not compared, separated by semicolons
+	private static String unmatched(Map<String, Map<String, String>> classes, Set<String> testClasses) {
+		return classes.entrySet().stream()
+			.filter(entry -> !entry.getKey().isEmpty() && !testClasses.contains(entry.getKey()))
+			.map(entry -> entry.getValue().get("testClass"))
+			.collect(Collectors.joining(";"));
+	}
+
+	private static Map<String, String> sum(Map<String, String> a, Map<String, String> b) {
+		final Map<String, String> result = new LinkedHashMap<>(a);
+		for (Map.Entry<String, String> entry : b.entrySet()) {
+			final String key = entry.getKey();
+			if (!key.endsWith("Ms") && !key.equals("calls") && !key.equals("testClasses") && !key.equals("coldStarts")
+					&& !key.equals("teardowns"))
+				continue;
+			if (key.equals("callMinMs") || key.equals("jvmSpawnMs"))
+				result.put(key, String.valueOf(Math.min(value(a, key), value(b, key))));
+			else
+				result.put(key, String.valueOf(value(a, key) + value(b, key)));
+		}
+		return result;
+	}
+
+	private static long value(Map<String, String> row, String key) {
+		final String value = row.get(key);
+		return value == null || value.isEmpty() ? 0 : Long.parseLong(value);
+	}
+
+	/**
+	 * The measurements of one test class; all durations in nanoseconds.
+	 */
+	static final class Profile {
+
+		// taken from the first invocation
+		private String testClass = "";
+		private int testClasses;
+		private int coldStarts;
+		private long start;
+		private long probeBuild;
+		private long probeInstall;
+		private int calls;
+		private long call;
+		private long callMin = Long.MAX_VALUE;
+		private long probeUninstall;
+		private int teardowns;
+		private long teardown;
+
+		synchronized void started(long nanos, boolean reused) {
+			testClasses++;
+			if (!reused)
+				coldStarts++;
+			start += nanos;
+		}
+
+		synchronized void probeBuilt(long nanos) {
+			probeBuild += nanos;
+		}
+
+		synchronized void probeInstalled(long nanos) {
+			probeInstall += nanos;
+		}
+
+		synchronized void called(String testClass, long nanos) {
+			if (this.testClass.isEmpty())
+				this.testClass = testClass;
+			calls++;
+			call += nanos;
+			callMin = Math.min(callMin, nanos);
+		}
+
+		synchronized void probeUninstalled(long nanos) {
+			probeUninstall += nanos;
+		}
+
+		synchronized void stopped(long nanos) {
+			teardowns++;
+			teardown += nanos;
+		}
+
+		synchronized boolean hasData() {
+			return testClasses > 0 || calls > 0 || teardowns > 0;
+		}
+
+		synchronized boolean hasTeardowns() {
+			return teardowns > 0;
+		}
+
+		synchronized String toCsv(String module, String fork, String scenario, String container, long jvmSpawnMillis) {
+			final long total = start + probeBuild + probeInstall + call + probeUninstall + teardown;
+			return module + "," + (fork == null ? "" : fork) + "," + scenario + "," + container + "," + testClass + "," + testClasses + ","
+					+ coldStarts + "," + millis(start) + "," + millis(probeBuild) + "," + millis(probeInstall) + "," + calls + ","
+					+ millis(call) + "," + (calls == 0 ? 0 : millis(callMin)) + "," + millis(probeUninstall) + "," + teardowns + ","
+					+ millis(teardown) + "," + jvmSpawnMillis + "," + millis(total);
+		}
+
+		private static long millis(long nanos) {
+			return nanos / 1_000_000;
+		}
+
+	}
+
+}
@@ -0,0 +1,28 @@
+package exam.support;
+
+import org.ops4j.pax.exam.TestContainerFactory;
+
+/**
+ * A stage of the container pipeline of the {@link WarmTestContainerFactory}, which adds
+ * options or wraps the containers created by the next stage.
+ */
+abstract class DelegatingTestContainerFactory implements TestContainerFactory {
+
+	protected final TestContainerFactory delegate;
+
+	DelegatingTestContainerFactory(TestContainerFactory delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @return
+	 * 		the innermost factory of the pipeline, i.e. the Pax Exam factory that creates the actual containers
+	 */
+	static TestContainerFactory unwrap(TestContainerFactory factory) {
+		while (factory instanceof DelegatingTestContainerFactory) {
+			factory = ((DelegatingTestContainerFactory) factory).delegate;
+		}
+		return factory;
+	}
+
+}
@@ -0,0 +1,50 @@
+package exam.support;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Data directories of the test JVM. When several surefire forks of the same module run
+ * in parallel, each fork is identified by the system property {@value #FORK_PROPERTY}
+ * and gets its own subfolder <code>data/fork-&lt;n&gt;</code>, so that the forks do not
+ * share the framework storage or configuration files. Without the property,
+ * the folder <code>data</code> is used.
+ */
+public final class ForkDirectories {
+
+	public static final String FORK_PROPERTY = "exam.support.fork";
+	private static final Path DATA = Paths.get("data");
+
+	private ForkDirectories() {}
+
+	/**
+	 * @return
+	 * 		the number of the surefire fork, or null if the tests do not run in parallel forks
+	 */
+	public static String forkId() {
+		final String fork = System.getProperty(FORK_PROPERTY);
+		// an unresolved ${surefire.forkNumber} placeholder is passed on when not forking
+		if (fork == null || fork.trim().isEmpty() || fork.startsWith("$"))
+			return null;
+		return fork.trim();
+	}
+
+	/**
+	 * @return
+	 * 		the data folder of this fork, relative to the working directory
+	 */
+	public static Path dataDirectory() {
+		return resolve(DATA);
+	}
+
+	/**
+	 * @return
+	 * 		the subfolder of the passed folder reserved for this fork, or the folder itself
+	 * 		if the tests do not run in parallel forks
+	 */
+	public static Path resolve(Path folder) {
+		final String fork = forkId();
+		return fork == null ? folder : folder.resolve("fork-" + fork);
+	}
+
+}
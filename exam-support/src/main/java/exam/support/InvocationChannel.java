@@ -0,0 +1,43 @@
+package exam.support;
+
+import org.ops4j.pax.exam.Option;
+
+import exam.support.channel.ProbeInvocationEndpoint;
+
+/**
+ * An alternative to RMI for the test method invocations in forked containers. If the system property
+ * {@value #CHANNEL_PROPERTY} is set to true, the {@link WarmTestContainerFactory} installs a small endpoint
+ * bundle into every forked container, which connects to the host via a local socket on startup. The
+ * connection is kept open for the lifetime of the container, so that a test method invocation costs a
+ * single round trip with a few bytes, instead of a service lookup and a method invocation via RMI.
+ * The endpoint also keeps track of the probe invoker services, so it does not look them up again for
+ * each invocation.<br>
+ * If the endpoint does not connect, for instance because the bundle could not be started, the invocations
+ * fall back to RMI. With OSGi security enabled, the endpoint bundle needs the same permissions as the
+ * framework, since it is on the call stack of every test method.
+ */
+public final class InvocationChannel {
+
+	public static final String CHANNEL_PROPERTY = "exam.support.channel";
+	private static final String ENDPOINT_BSN = "exam.support.invocation-endpoint";
+	private static Option endpointBundle;
+
+	private InvocationChannel() {}
+
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(CHANNEL_PROPERTY);
+	}
+
+	/**
+	 * @return
+	 * 		the endpoint bundle, see {@link SupportBundles}
+	 */
+	static synchronized Option endpointBundle() {
+		if (endpointBundle == null) {
+			endpointBundle = SupportBundles.activatorBundle(ENDPOINT_BSN, "org.osgi.framework;version=\"[1.7,2)\"",
+					ProbeInvocationEndpoint.class.getName(), ProbeInvocationEndpoint.class).startLevel(1).start();
+		}
+		return endpointBundle;
+	}
+
+}
@@ -0,0 +1,23 @@
+package exam.support;
+
+/**
+ * The Java version of the test JVM, which determines the VM options required by the
+ * forked container, e.g. <code>--add-opens</code> from Java 9 on.
+ */
+public final class JavaVersion {
+
+	private JavaVersion() {}
+
+	/**
+	 * @return
+	 * 		the major Java version, e.g. 8 for "1.8" or 11 for "11"
+	 */
+	public static int get() {
+		String version = System.getProperty("java.specification.version");
+		final int idx = version.indexOf('.');
+		if (idx > 0)
+			version = version.substring(idx + 1);
+		return Integer.parseInt(version);
+	}
+
+}
@@ -0,0 +1,123 @@
+package exam.support;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.options.FrameworkPropertyOption;
+import org.ops4j.pax.exam.options.ProvisionOption;
+import org.ops4j.pax.exam.options.SystemPropertyOption;
+import org.ops4j.pax.exam.options.ValueOption;
+import org.ops4j.pax.exam.options.extra.VMOption;
+import org.ops4j.pax.exam.options.extra.WorkingDirectoryOption;
+
+/**
+ * Identifies a Pax Exam option set. Two configurations that provision the same bundles
+ * (in the same order, with the same start levels) and set the same framework properties,
+ * system properties and VM options get equal keys. The working directory is ignored.
+ */
+public final class OptionSetKey {
+
+	private final List<String> entries;
+	private final String hash;
+
+	private OptionSetKey(List<String> entries) {
+		this.entries = Collections.unmodifiableList(entries);
+		this.hash = sha256(String.join("\n", entries));
+	}
+
+	public static OptionSetKey of(ExamSystem system) {
+		return of(system.getOptions(Option.class));
+	}
+
+	public static OptionSetKey of(Option... options) {
+		final Option[] expanded = OptionUtils.expand(options);
+		final List<String> entries = new ArrayList<>(expanded.length);
+		for (Option opt : expanded) {
+			// Pax Exam adds a new temp folder to every system, unless a working directory is configured explicitly
+			if (opt instanceof WorkingDirectoryOption)
+				continue;
+			entries.add(describe(opt));
+		}
+		return new OptionSetKey(entries);
+	}
+
+	/**
+	 * @return
+	 * 		a new key that additionally depends on the passed strings, such as a framework version
+	 */
+	public OptionSetKey with(String... additional) {
+		final List<String> entries = new ArrayList<>(this.entries);
+		Collections.addAll(entries, additional);
+		return new OptionSetKey(entries);
+	}
+
+	/**
+	 * @return
+	 * 		a hex encoded SHA-256 hash of the option set
+	 */
+	public String hash() {
+		return hash;
+	}
+
+	public List<String> entries() {
+		return entries;
+	}
+
+	// options without a meaningful toString method will simply never match another option set
+	private static String describe(Option option) {
+		if (option instanceof ProvisionOption) {
+			final ProvisionOption<?> bundle = (ProvisionOption<?>) option;
+			return "bundle " + bundle.getURL() + ";start=" + bundle.shouldStart()
+				+ ";startLevel=" + bundle.getStartLevel() + ";update=" + bundle.shouldUpdate();
+		}
+		if (option instanceof FrameworkPropertyOption) {
+			final FrameworkPropertyOption prop = (FrameworkPropertyOption) option;
+			return "framework " + prop.getKey() + "=" + prop.getValue();
+		}
+		if (option instanceof SystemPropertyOption) {
+			final SystemPropertyOption prop = (SystemPropertyOption) option;
+			return "system " + prop.getKey() + "=" + prop.getValue();
+		}
+		if (option instanceof VMOption)
+			return "vm " + ((VMOption) option).getOption();
+		if (option instanceof ValueOption)
+			return option.getClass().getSimpleName() + "=" + ((ValueOption<?>) option).getValue();
+		return option.getClass().getSimpleName() + " " + option;
+	}
+
+	private static String sha256(String in) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest(in.getBytes(StandardCharsets.UTF_8));
+			final StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof OptionSetKey && ((OptionSetKey) obj).hash.equals(hash);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "OptionSetKey[" + hash.substring(0, 12) + "]";
+	}
+
+}
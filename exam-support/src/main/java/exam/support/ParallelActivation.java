@@ -0,0 +1,130 @@
+package exam.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.options.ProvisionOption;
+import org.ops4j.pax.exam.spi.DefaultExamSystem;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+
+import exam.support.activation.ParallelActivator;
+
+/**
+ * Concurrent activation of the provisioned bundles. If the system property {@value #ACTIVATION_PROPERTY}
+ * is set to true, the {@link WarmTestContainerFactory} installs all bundles without an explicit start level
+ * without starting them, and adds a bundle at start level {@value #START_LEVEL}, which resolves them,
+ * derives an activation plan from their wiring and starts independent bundles concurrently on
+ * {@value #THREADS_PROPERTY} threads (by default one per core), see {@link ParallelActivator}. Bundles
+ * with an explicit start level, such as the permission admin of OGEMA, start as before. The framework
+ * only reaches the test start level once all bundles are active.<br>
+ * The bundles are started transiently, so that they are started the same way from storage snapshots.
+ */
+public final class ParallelActivation {
+
+	public static final String ACTIVATION_PROPERTY = "exam.support.activation";
+	public static final String THREADS_PROPERTY = "exam.support.activation.threads";
+	/**
+	 * One above the default start level of provisioned bundles in Pax Exam, and below the one of the probe.
+	 */
+	public static final int START_LEVEL = org.ops4j.pax.exam.Constants.START_LEVEL_DEFAULT_PROVISION + 1;
+	private static final String ACTIVATOR_BSN = "exam.support.parallel-activation";
+	private static Option activatorBundle;
+
+	private ParallelActivation() {}
+
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(ACTIVATION_PROPERTY);
+	}
+
+	/**
+	 * @return
+	 * 		the bundle which exports the package <code>exam.support.activation</code>, for tests and benchmarks
+	 * 		that plan and start bundles themselves; activated at {@value #START_LEVEL}
+	 */
+	public static synchronized Option activationSupport() {
+		if (activatorBundle == null) {
+			activatorBundle = CoreOptions.bundle(SupportBundles.jar(ACTIVATOR_BSN, "1.0.0",
+					"org.osgi.framework;version=\"[1.8,2)\",org.osgi.framework.wiring;version=\"[1.2,2)\"",
+					"exam.support.activation;version=\"1.0.0\"", ParallelActivator.class.getName(), ParallelActivator.class))
+				.startLevel(START_LEVEL).start();
+		}
+		return activatorBundle;
+	}
+
+	/**
+	 * @return
+	 * 		the system with the bundles to be started by the {@link ParallelActivator}, or the system itself if
+	 * 		there are none
+	 */
+	static ExamSystem plan(ExamSystem system) {
+		final Option[] options = OptionUtils.expand(system.getOptions(Option.class));
+		final Option activator = activationSupport();
+		final String activatorUrl = ((ProvisionOption<?>) activator).getURL();
+		final List<Option> planned = new ArrayList<>(options.length + 3);
+		final StringBuilder bundles = new StringBuilder();
+		boolean hasActivator = false;
+		for (Option option : options) {
+			if (option instanceof ProvisionOption) {
+				final ProvisionOption<?> provision = (ProvisionOption<?>) option;
+				if (provision.getURL().equals(activatorUrl))
+					hasActivator = true;
+				final String id = provision.shouldStart() && provision.getStartLevel() == null ? bundleId(provision.getURL()) : null;
+				if (id != null) {
+					if (bundles.length() > 0)
+						bundles.append(',');
+					bundles.append(id);
+					planned.add(CoreOptions.bundle(provision.getURL()).noStart().update(provision.shouldUpdate()));
+					continue;
+				}
+			}
+			planned.add(option);
+		}
+		if (bundles.length() == 0)
+			return system;
+		if (!hasActivator)
+			planned.add(activator);
+		planned.add(CoreOptions.frameworkProperty(ParallelActivator.BUNDLES_PROPERTY).value(bundles.toString()));
+		final String threads = System.getProperty(THREADS_PROPERTY);
+		if (threads != null)
+			planned.add(CoreOptions.frameworkProperty(ParallelActivator.THREADS_PROPERTY).value(threads));
+		try {
+			return DefaultExamSystem.create(planned.toArray(new Option[planned.size()]));
+		} catch (IOException e) {
+			throw new TestContainerException("Failed to plan the parallel activation", e);
+		}
+	}
+
+	// symbolic name and version as in the container, or null if the bundle cannot be read here
+	private static String bundleId(String url) {
+		if (url.startsWith("mvn:"))
+			url = ArtifactResolver.resolve(url);
+		if (!url.startsWith("file:"))
+			return null;
+		try (InputStream in = new URL(url).openStream(); JarInputStream jar = new JarInputStream(in)) {
+			final Manifest manifest = jar.getManifest();
+			if (manifest == null)
+				return null;
+			final Attributes attributes = manifest.getMainAttributes();
+			final String bsn = attributes.getValue(Constants.BUNDLE_SYMBOLICNAME);
+			if (bsn == null || attributes.getValue(Constants.FRAGMENT_HOST) != null)
+				return null;
+			final int idx = bsn.indexOf(';');
+			return (idx < 0 ? bsn : bsn.substring(0, idx)).trim() + ";" + Version.parseVersion(attributes.getValue(Constants.BUNDLE_VERSION));
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+}
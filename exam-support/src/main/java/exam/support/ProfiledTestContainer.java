@@ -0,0 +1,103 @@
+package exam.support;
+
+import java.io.InputStream;
+
+import org.ops4j.pax.exam.TestAddress;
+import org.ops4j.pax.exam.TestContainer;
+
+/**
+ * Measures the container lifecycle on behalf of the {@link ContainerProfiler}. Wraps the
+ * containers returned to the reactor for one test class, so the time between the end of
+ * {@link #start()} and {@link #installProbe(InputStream)} is the time the reactor spends
+ * building the probe.
+ */
+final class ProfiledTestContainer implements TestContainer {
+
+	private final TestContainer delegate;
+	private final ContainerProfiler.Profile profile;
+	// true if stop() only removes the probe, see WarmTestContainer
+	private final boolean warm;
+	private long startReturned = -1;
+
+	ProfiledTestContainer(TestContainer delegate, ContainerProfiler.Profile profile, boolean warm) {
+		this.delegate = delegate;
+		this.profile = profile;
+		this.warm = warm;
+	}
+
+	@Override
+	public synchronized TestContainer start() {
+		final boolean reused = delegate instanceof WarmTestContainer && ((WarmTestContainer) delegate).isStarted();
+		final long t0 = System.nanoTime();
+		delegate.start();
+		startReturned = System.nanoTime();
+		profile.started(startReturned - t0, reused);
+		return this;
+	}
+
+	@Override
+	public long install(InputStream stream) {
+		return delegate.install(stream);
+	}
+
+	@Override
+	public long install(String location, InputStream stream) {
+		return delegate.install(location, stream);
+	}
+
+	@Override
+	public synchronized long installProbe(InputStream stream) {
+		final long t0 = System.nanoTime();
+		if (startReturned >= 0) {
+			profile.probeBuilt(t0 - startReturned);
+			startReturned = -1;
+		}
+		final long id = delegate.installProbe(stream);
+		profile.probeInstalled(System.nanoTime() - t0);
+		return id;
+	}
+
+	@Override
+	public void uninstallProbe() {
+		final long t0 = System.nanoTime();
+		delegate.uninstallProbe();
+		profile.probeUninstalled(System.nanoTime() - t0);
+	}
+
+	@Override
+	public void call(TestAddress address) {
+		final long t0 = System.nanoTime();
+		try {
+			delegate.call(address);
+		} finally {
+			profile.called(testClass(address), System.nanoTime() - t0);
+		}
+	}
+
+	// the caption of a test address is the class name plus the method name
+	private static String testClass(TestAddress address) {
+		final String caption = address.root().caption();
+		final int idx = caption.lastIndexOf('.');
+		return idx > 0 ? caption.substring(0, idx) : caption;
+	}
+
+	@Override
+	public synchronized TestContainer stop() {
+		final long t0 = System.nanoTime();
+		try {
+			delegate.stop();
+		} finally {
+			if (warm)
+				profile.probeUninstalled(System.nanoTime() - t0);
+			else
+				profile.stopped(System.nanoTime() - t0);
+		}
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+}
@@ -0,0 +1,73 @@
+package exam.support;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.TestAddress;
+import org.ops4j.pax.exam.TestContainer;
+
+/**
+ * Wraps a test container that runs on a copy of a storage snapshot, and deletes 
+ * the copy and the working files of its system when the container stops. See {@link StorageSnapshots}.
+ */
+final class SnapshotTestContainer implements TestContainer {
+
+	private final TestContainer delegate;
+	private final ExamSystem system;
+	private final Path storage;
+
+	SnapshotTestContainer(TestContainer delegate, ExamSystem system, Path storage) {
+		this.delegate = delegate;
+		this.system = system;
+		this.storage = storage;
+	}
+
+	@Override
+	public TestContainer start() {
+		delegate.start();
+		return this;
+	}
+
+	@Override
+	public long install(InputStream stream) {
+		return delegate.install(stream);
+	}
+
+	@Override
+	public long install(String location, InputStream stream) {
+		return delegate.install(location, stream);
+	}
+
+	@Override
+	public long installProbe(InputStream stream) {
+		return delegate.installProbe(stream);
+	}
+
+	@Override
+	public void uninstallProbe() {
+		delegate.uninstallProbe();
+	}
+
+	@Override
+	public void call(TestAddress address) {
+		delegate.call(address);
+	}
+
+	@Override
+	public TestContainer stop() {
+		try {
+			delegate.stop();
+		} finally {
+			system.clear();
+			StorageSnapshots.delete(storage);
+		}
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+}
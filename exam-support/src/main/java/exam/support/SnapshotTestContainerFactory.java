@@ -0,0 +1,22 @@
+package exam.support;
+
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.TestContainer;
+import org.ops4j.pax.exam.TestContainerFactory;
+
+/**
+ * Boots the containers created by the delegate factory from a storage snapshot.
+ * See {@link StorageSnapshots}.
+ */
+final class SnapshotTestContainerFactory extends DelegatingTestContainerFactory {
+
+	SnapshotTestContainerFactory(TestContainerFactory delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public TestContainer[] create(ExamSystem system) {
+		return StorageSnapshots.create(delegate, system);
+	}
+
+}
@@ -0,0 +1,206 @@
+package exam.support;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.TestContainerException;
+
+import exam.support.bench.Escaping;
+import exam.support.osgi.StartupRecorder;
+
+/**
+ * Startup timings of the test containers. If the system property {@value #TIMING_PROPERTY}
+ * is set to true, e.g. via the profile startup-timings, the {@link WarmTestContainerFactory} installs a small recorder bundle at start
+ * level 1 into every container, which tracks when each bundle is resolved, activated and registers
+ * its first service, and when the framework reaches each start level. Together with the times
+ * measured outside the container (artifact resolution, container start, probe installation),
+ * the results are written to {@value #REPORT_DIR} as one JSON and one CSV file per container start.
+ */
+public final class StartupTimings {
+
+	public static final String TIMING_PROPERTY = "exam.support.timing";
+	public static final String REPORT_DIR = "target/startup-timings";
+	private static final String RECORDER_BSN = "exam.support.startup-recorder";
+	private static final AtomicInteger reportCounter = new AtomicInteger();
+	private static Option recorderBundle;
+
+	private StartupTimings() {}
+
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(TIMING_PROPERTY);
+	}
+
+	static Path reportFolder() {
+		return ForkDirectories.resolve(Paths.get(REPORT_DIR));
+	}
+
+	static Path newRecordingFile() {
+		try {
+			final Path folder = reportFolder().resolve("raw");
+			Files.createDirectories(folder);
+			return Files.createTempFile(folder, "recording-", ".txt").toAbsolutePath();
+		} catch (IOException e) {
+			throw new TestContainerException("Failed to create startup timings file", e);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the recorder bundle, see {@link SupportBundles}
+	 */
+	static synchronized Option recorderBundle() {
+		if (recorderBundle == null) {
+			recorderBundle = SupportBundles.activatorBundle(RECORDER_BSN,
+					"org.osgi.framework;version=\"[1.7,2)\",org.osgi.framework.startlevel;version=\"[1.0,2)\"",
+					StartupRecorder.class.getName(), StartupRecorder.class).startLevel(1).start();
+		}
+		return recorderBundle;
+	}
+
+	/**
+	 * Combine the host side measurements with the recording from within the container and
+	 * write the report.
+	 * @param container
+	 * @param key
+	 * @param start
+	 * 		start of the container, in millis since the epoch
+	 * @param started
+	 * 		end of the container start, or -1 if the container did not start
+	 * @param probeInstallMillis
+	 * 		duration of the first probe installation, or -1 if no probe was installed
+	 * @param recording
+	 * 		the file written by the {@link StartupRecorder}
+	 */
+	static void report(String container, OptionSetKey key, long start, long started, long probeInstallMillis, Path recording) {
+		final List<String[]> events = new ArrayList<>();
+		final List<BundleTimes> bundles = new ArrayList<>();
+		try {
+			if (Files.exists(recording)) {
+				for (String line : Files.readAllLines(recording, StandardCharsets.UTF_8)) {
+					final String[] fields = line.split("\t");
+					if (fields[0].equals("event") && fields.length == 3)
+						events.add(new String[] { fields[2], fields[1] });
+					else if (fields[0].equals("bundle") && fields.length == 11)
+						bundles.add(new BundleTimes(fields));
+				}
+				Files.delete(recording);
+			}
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read startup recording " + recording + ": " + e);
+		}
+		final long lastInstall = bundles.stream().mapToLong(b -> b.installed).filter(t -> t >= start).max().orElse(-1);
+		final long activation = bundles.stream().mapToLong(BundleTimes::activationMillis).filter(t -> t > 0).sum();
+		final String name = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(start)) + "-" + key.hash().substring(0, 12)
+				+ "-" + reportCounter.incrementAndGet();
+		final Path json = reportFolder().resolve(name + ".json");
+		final Path csv = reportFolder().resolve(name + ".csv");
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"container\": ").append(Escaping.json(container)).append(",\n");
+		sb.append("  \"optionSet\": ").append(Escaping.json(key.hash())).append(",\n");
+		sb.append("  \"fork\": ").append(Escaping.json(ForkDirectories.forkId())).append(",\n");
+		sb.append("  \"start\": ").append(start).append(",\n");
+		sb.append("  \"phases\": {\n");
+		sb.append("    \"artifactResolutionJvmTotal\": ").append(ArtifactResolver.getResolutionMillis()).append(",\n");
+		sb.append("    \"containerStart\": ").append(started < 0 ? -1 : started - start).append(",\n");
+		sb.append("    \"bundleInstall\": ").append(offset(lastInstall, start)).append(",\n");
+		sb.append("    \"bundleActivationTotal\": ").append(activation).append(",\n");
+		sb.append("    \"probeInstall\": ").append(probeInstallMillis).append("\n");
+		sb.append("  },\n");
+		sb.append("  \"events\": [");
+		for (int i = 0; i < events.size(); i++) {
+			final String[] event = events.get(i);
+			sb.append(i == 0 ? "\n" : ",\n").append("    { \"name\": ").append(Escaping.json(event[0]))
+				.append(", \"offset\": ").append(offset(Long.parseLong(event[1]), start)).append(" }");
+		}
+		sb.append("\n  ],\n");
+		sb.append("  \"bundles\": [");
+		for (int i = 0; i < bundles.size(); i++) {
+			final BundleTimes b = bundles.get(i);
+			sb.append(i == 0 ? "\n" : ",\n").append("    { \"id\": ").append(b.id)
+				.append(", \"symbolicName\": ").append(Escaping.json(b.symbolicName))
+				.append(", \"version\": ").append(Escaping.json(b.version))
+				.append(", \"startLevel\": ").append(b.startLevel)
+				.append(", \"installed\": ").append(offset(b.installed, start))
+				.append(", \"resolved\": ").append(offset(b.resolved, start))
+				.append(", \"started\": ").append(offset(b.started, start))
+				.append(", \"activation\": ").append(b.activationMillis())
+				.append(", \"firstService\": ").append(offset(b.firstService, start))
+				.append(", \"services\": ").append(b.services).append(" }");
+		}
+		sb.append("\n  ]\n}\n");
+
+		final List<String> rows = new ArrayList<>(bundles.size() + 1);
+		rows.add("id,symbolicName,version,startLevel,installed,resolved,started,activation,firstService,services");
+		for (BundleTimes b : bundles) {
+			rows.add(b.id + "," + b.symbolicName + "," + b.version + "," + b.startLevel + "," + offset(b.installed, start) + ","
+					+ offset(b.resolved, start) + "," + offset(b.started, start) + "," + b.activationMillis() + ","
+					+ offset(b.firstService, start) + "," + b.services);
+		}
+		try {
+			Files.createDirectories(json.getParent());
+			Files.write(json, sb.toString().getBytes(StandardCharsets.UTF_8));
+			Files.write(csv, rows, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			System.err.println("Failed to write startup timings: " + e);
+			return;
+		}
+		final String slowest = bundles.stream()
+			.filter(b -> b.activationMillis() > 0)
+			.sorted(Comparator.comparingLong(BundleTimes::activationMillis).reversed())
+			.limit(3)
+			.map(b -> b.symbolicName + " " + b.activationMillis() + "ms")
+			.collect(Collectors.joining(", "));
+		System.out.println("   Container " + container + " started in " + (started < 0 ? -1 : started - start) + "ms (install "
+				+ offset(lastInstall, start) + "ms, activation " + activation + "ms; slowest: " + slowest + "), see " + json);
+	}
+
+	private static long offset(long time, long start) {
+		return time < 0 ? -1 : time - start;
+	}
+
+	private static final class BundleTimes {
+
+		final long id;
+		final String symbolicName;
+		final String version;
+		final int startLevel;
+		final long installed;
+		final long resolved;
+		final long starting;
+		final long started;
+		final long firstService;
+		final int services;
+
+		BundleTimes(String[] fields) {
+			this.id = Long.parseLong(fields[1]);
+			this.symbolicName = fields[2];
+			this.version = fields[3];
+			this.startLevel = Integer.parseInt(fields[4]);
+			this.installed = Long.parseLong(fields[5]);
+			this.resolved = Long.parseLong(fields[6]);
+			this.starting = Long.parseLong(fields[7]);
+			this.started = Long.parseLong(fields[8]);
+			this.firstService = Long.parseLong(fields[9]);
+			this.services = Integer.parseInt(fields[10]);
+		}
+
+		long activationMillis() {
+			return starting < 0 || started < 0 ? -1 : started - starting;
+		}
+
+	}
+
+}
@@ -0,0 +1,217 @@
+package exam.support;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.TestContainer;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.TestContainerFactory;
+import org.ops4j.pax.exam.spi.DefaultExamSystem;
+
+/**
+ * Keeps a snapshot of the framework storage directory after all bundles of an option set have
+ * been installed and started, and boots later containers from a copy of it instead of a clean
+ * storage. The snapshots are keyed by the option set (see {@link OptionSetKey}), the framework
+ * implementation found on the classpath and the Java version.<br>
+ * On the first run for a given key, an additional container is started and stopped once, only to
+ * provision the snapshot. Every container then gets its own copy of the snapshot, in which
+ * the bundle contents are hard-linked where possible. The copy is deleted when the container stops.<br>
+ * The containers use a working directory per option set, so that the bundle locations of the forked
+ * container remain stable across runs.<br>
+ * Enable it by setting the system property {@value #SNAPSHOT_PROPERTY} to true. The snapshots are
+ * stored in {@value #DEFAULT_SNAPSHOT_DIR}, unless {@value #SNAPSHOT_DIR_PROPERTY} specifies a
+ * different folder. Delete the folder to enforce a clean start.
+ */
+public final class StorageSnapshots {
+
+	public static final String SNAPSHOT_PROPERTY = "exam.support.snapshot";
+	public static final String SNAPSHOT_DIR_PROPERTY = "exam.support.snapshot.dir";
+	public static final String DEFAULT_SNAPSHOT_DIR = "target/storage-snapshots";
+	private static final String FRAMEWORK_STORAGE = "org.osgi.framework.storage";
+	private static final String FRAMEWORK_STORAGE_CLEAN = "org.osgi.framework.storage.clean";
+	private static final String FRAMEWORK_FACTORY_SERVICE = "META-INF/services/org.osgi.framework.launch.FrameworkFactory";
+	// Felix bundle state and id counter, Equinox storage manager, and the data areas of the bundles
+	private static final Set<String> REWRITTEN_FILES = new HashSet<>(Arrays.asList("bundle.info", "bundle.id", "last.java.version", "cache.lock"));
+	private static final Set<String> REWRITTEN_FOLDERS = new HashSet<>(Arrays.asList(".manager", "data"));
+
+	private StorageSnapshots() {}
+
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(SNAPSHOT_PROPERTY);
+	}
+
+	/**
+	 * Create the containers for the passed system, booting from a copy of the storage snapshot.
+	 * If the bundles cannot be provisioned from stable locations, the containers are created
+	 * without a snapshot.
+	 */
+	public static TestContainer[] create(TestContainerFactory factory, ExamSystem system) {
+		final Option[] options = system.getOptions(Option.class);
+		final OptionSetKey key = OptionSetKey.of(system).with(DelegatingTestContainerFactory.unwrap(factory).getClass().getName(),
+				frameworkImplementation(), "java " + System.getProperty("java.specification.version"));
+		try {
+			final Path base = Paths.get(System.getProperty(SNAPSHOT_DIR_PROPERTY, DEFAULT_SNAPSHOT_DIR));
+			final Path snapshot = getSnapshotFolder(factory, options, key, base);
+			final Path runs = base.resolve("runs");
+			Files.createDirectories(runs);
+			final Path storage = Files.createTempDirectory(runs, key.hash().substring(0, 12) + "-");
+			restore(snapshot, storage);
+			// later options override earlier ones in both the native and the forked container
+			final ExamSystem restored = DefaultExamSystem.create(OptionUtils.combine(options,
+					workingDirectory(base, key),
+					CoreOptions.frameworkProperty(FRAMEWORK_STORAGE).value(storage.toAbsolutePath().toString()),
+					CoreOptions.frameworkProperty(FRAMEWORK_STORAGE_CLEAN).value("none")));
+			final TestContainer[] containers = factory.create(restored);
+			for (int i = 0; i < containers.length; i++) {
+				containers[i] = new SnapshotTestContainer(containers[i], restored, storage);
+			}
+			return containers;
+		} catch (IOException e) {
+			throw new TestContainerException("Failed to restore storage snapshot for " + key, e);
+		}
+	}
+
+	private static Path getSnapshotFolder(TestContainerFactory factory, Option[] options, OptionSetKey key, Path base) throws IOException {
+		final Path snapshot = base.resolve(key.hash());
+		if (Files.isDirectory(snapshot)) {
+			System.out.println("   Restoring storage snapshot " + snapshot);
+			return snapshot;
+		}
+		Files.createDirectories(base);
+		final Path tmp = Files.createTempDirectory(base, "provisioning-");
+		final long start = System.currentTimeMillis();
+		final ExamSystem provisioning = DefaultExamSystem.create(OptionUtils.combine(options,
+				workingDirectory(base, key),
+				CoreOptions.frameworkProperty(FRAMEWORK_STORAGE).value(tmp.toAbsolutePath().toString()),
+				CoreOptions.frameworkProperty(FRAMEWORK_STORAGE_CLEAN).value("onFirstInit")));
+		try {
+			final TestContainer[] containers = factory.create(provisioning);
+			if (containers.length > 0) {
+				containers[0].start();
+				containers[0].stop();
+			}
+			Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+			System.out.println("   Created storage snapshot " + snapshot + " in " + (System.currentTimeMillis() - start) + "ms");
+		} catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+			System.out.println("   Using storage snapshot " + snapshot + ", created concurrently by another JVM");
+		} finally {
+			provisioning.clear();
+			delete(tmp);
+		}
+		return snapshot;
+	}
+
+	/*
+	 * The forked container copies the bundles to the working directory and installs them from there,
+	 * so the working directory determines the bundle locations. By default it is a new temp folder
+	 * for every system, which would not match the locations in the snapshot. Parallel forks
+	 * must not share it, though.
+	 */
+	private static Option workingDirectory(Path base, OptionSetKey key) {
+		final Path work = ForkDirectories.resolve(base.resolve("work").resolve(key.hash()));
+		return CoreOptions.workingDirectory(work.toAbsolutePath().toString());
+	}
+
+	// the URL of the service file contains the path of the framework jar, including its version
+	private static String frameworkImplementation() {
+		final List<String> factories = new ArrayList<>();
+		try {
+			final Enumeration<URL> resources = StorageSnapshots.class.getClassLoader().getResources(FRAMEWORK_FACTORY_SERVICE);
+			while (resources.hasMoreElements()) {
+				factories.add(resources.nextElement().toString());
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to determine the framework implementation: " + e);
+		}
+		Collections.sort(factories);
+		return "framework " + String.join(",", factories);
+	}
+
+	/*
+	 * The bundle contents (Felix bundle.jar, Equinox bundleFile) are never modified by the framework, they
+	 * can be shared between the copies. Files which the framework or the bundles may rewrite in place are copied.
+	 */
+	private static void restore(Path snapshot, Path target) throws IOException {
+		Files.walkFileTree(snapshot, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(target.resolve(snapshot.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				final Path relative = snapshot.relativize(file);
+				final Path copy = target.resolve(relative.toString());
+				if (!isRewritten(relative)) {
+					try {
+						Files.createLink(copy, file);
+						return FileVisitResult.CONTINUE;
+					} catch (IOException | UnsupportedOperationException e) {
+						// fall back to copying, e.g. if the file system does not support hard links
+					}
+				}
+				Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+				return FileVisitResult.CONTINUE;
+			}
+
+		});
+	}
+
+	private static boolean isRewritten(Path relative) {
+		final String name = relative.getFileName().toString();
+		if (REWRITTEN_FILES.contains(name) || name.startsWith(".fileTable"))
+			return true;
+		for (Path element : relative) {
+			if (REWRITTEN_FOLDERS.contains(element.toString()))
+				return true;
+		}
+		return false;
+	}
+
+	static void delete(Path folder) {
+		if (!Files.exists(folder))
+			return;
+		try {
+			Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+					Files.delete(dir);
+					return FileVisitResult.CONTINUE;
+				}
+
+			});
+		} catch (IOException e) {
+			System.err.println("Failed to delete " + folder + ": " + e);
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package exam.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.options.UrlProvisionOption;
+
+import exam.support.bench.Benchmark;
+
+/**
+ * Bundles packaged from classes on the test classpath, for code that must run inside the container.
+ * The jars are written to {@value #BUNDLE_DIR} on first use. Their location does not change
+ * between runs, so that they do not affect the option set key or storage snapshots.<br>
+ * The classes packaged here run in the container, where exam-support itself is not available. They may only
+ * use the packages listed in the Import-Package header of their bundle, usually packages of the system bundle.
+ */
+public final class SupportBundles {
+
+	public static final String BUNDLE_DIR = "target/support-bundles";
+	private static final Map<String, String> bundles = new HashMap<>();
+
+	private SupportBundles() {}
+
+	/**
+	 * @return
+	 * 		a bundle exporting the benchmark harness in the package <code>exam.support.bench</code>
+	 */
+	static Option benchmarkBundle() {
+		return CoreOptions.bundle(jar("exam.support.bench", "1.0.0",
+				"org.osgi.framework;version=\"[1.7,2)\"",
+				"exam.support.bench;version=\"1.0.0\"", null, Benchmark.class));
+	}
+
+	/**
+	 * @param symbolicName
+	 * @param importPackage
+	 * 		the Import-Package header, may be null
+	 * @param exportPackage
+	 * 		the Export-Package header, may be null
+	 * @param packages
+	 * 		the package of each of these classes is added to the bundle, including nested classes
+	 * @return
+	 * 		a provisioning option for the bundle, which is packaged on first use
+	 */
+	public static UrlProvisionOption bundle(String symbolicName, String importPackage, String exportPackage, Class<?>... packages) {
+		return CoreOptions.bundle(jar(symbolicName, "1.0.0", importPackage, exportPackage, null, packages));
+	}
+
+	/**
+	 * @param symbolicName
+	 * @param importPackage
+	 * 		the Import-Package header, may be null
+	 * @param activator
+	 * 		the fully qualified name of the bundle activator
+	 * @param packages
+	 * 		the package of each of these classes is added to the bundle, including nested classes
+	 * @return
+	 * 		a provisioning option for the bundle, which is packaged on first use
+	 */
+	public static UrlProvisionOption activatorBundle(String symbolicName, String importPackage, String activator, Class<?>... packages) {
+		return CoreOptions.bundle(jar(symbolicName, "1.0.0", importPackage, null, activator, packages));
+	}
+
+	static synchronized String jar(String symbolicName, String version, String importPackage,
+			String exportPackage, String activator, Class<?>... packages) {
+		String uri = bundles.get(symbolicName);
+		if (uri != null)
+			return uri;
+		final Path folder = ForkDirectories.resolve(Paths.get(BUNDLE_DIR));
+		final Path jar = folder.resolve(symbolicName + ".jar").toAbsolutePath();
+		final Manifest manifest = new Manifest();
+		final Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue("Bundle-ManifestVersion", "2");
+		attributes.putValue("Bundle-SymbolicName", symbolicName);
+		attributes.putValue("Bundle-Version", version);
+		if (importPackage != null)
+			attributes.putValue("Import-Package", importPackage);
+		if (exportPackage != null)
+			attributes.putValue("Export-Package", exportPackage);
+		if (activator != null)
+			attributes.putValue("Bundle-Activator", activator);
+		try {
+			Files.createDirectories(folder);
+			final Path tmp = Files.createTempFile(folder, symbolicName, ".tmp");
+			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(tmp), manifest)) {
+				for (Class<?> clazz : packages) {
+					for (String classFile : classFiles(clazz)) {
+						try (InputStream in = clazz.getClassLoader().getResourceAsStream(classFile)) {
+							if (in == null)
+								throw new IOException("Class file not found: " + classFile);
+							out.putNextEntry(new JarEntry(classFile));
+							copy(in, out);
+							out.closeEntry();
+						}
+					}
+				}
+			}
+			Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | URISyntaxException e) {
+			throw new TestContainerException("Failed to create bundle " + symbolicName, e);
+		}
+		uri = jar.toUri().toString();
+		bundles.put(symbolicName, uri);
+		return uri;
+	}
+
+	// this module is either on the classpath as a folder (in the reactor) or as a jar
+	private static List<String> classFiles(Class<?> clazz) throws IOException, URISyntaxException {
+		final String folder = clazz.getPackage().getName().replace('.', '/') + "/";
+		final Path location = Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+		final List<String> classFiles = new ArrayList<>();
+		if (Files.isDirectory(location)) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(location.resolve(folder), "*.class")) {
+				for (Path file : files) {
+					classFiles.add(folder + file.getFileName());
+				}
+			}
+		} else {
+			try (JarFile jarFile = new JarFile(location.toFile())) {
+				final Enumeration<JarEntry> entries = jarFile.entries();
+				while (entries.hasMoreElements()) {
+					final String name = entries.nextElement().getName();
+					if (name.startsWith(folder) && name.endsWith(".class") && name.indexOf('/', folder.length()) < 0)
+						classFiles.add(name);
+				}
+			}
+		}
+		Collections.sort(classFiles);
+		return classFiles;
+	}
+
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package exam.support;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.ops4j.pax.exam.TestAddress;
+import org.ops4j.pax.exam.TestContainer;
+
+/**
+ * Measures the start of a test container and writes the startup report once the first probe 
+ * is installed, or when the container stops. See {@link StartupTimings}.
+ */
+final class TimedTestContainer implements TestContainer {
+
+	private final TestContainer delegate;
+	private final OptionSetKey key;
+	private final Path recording;
+	private long start = -1;
+	private long started = -1;
+	private boolean reported;
+
+	TimedTestContainer(TestContainer delegate, OptionSetKey key, Path recording) {
+		this.delegate = delegate;
+		this.key = key;
+		this.recording = recording;
+	}
+
+	@Override
+	public synchronized TestContainer start() {
+		start = System.currentTimeMillis();
+		delegate.start();
+		started = System.currentTimeMillis();
+		return this;
+	}
+
+	@Override
+	public long install(InputStream stream) {
+		return delegate.install(stream);
+	}
+
+	@Override
+	public long install(String location, InputStream stream) {
+		return delegate.install(location, stream);
+	}
+
+	@Override
+	public synchronized long installProbe(InputStream stream) {
+		final long t0 = System.currentTimeMillis();
+		final long id = delegate.installProbe(stream);
+		report(System.currentTimeMillis() - t0);
+		return id;
+	}
+
+	@Override
+	public void uninstallProbe() {
+		delegate.uninstallProbe();
+	}
+
+	@Override
+	public void call(TestAddress address) {
+		delegate.call(address);
+	}
+
+	@Override
+	public synchronized TestContainer stop() {
+		try {
+			delegate.stop();
+		} finally {
+			report(-1);
+		}
+		return this;
+	}
+
+	// the recorder writes its file when the probe is installed or the framework stops
+	private void report(long probeInstallMillis) {
+		if (reported || start < 0)
+			return;
+		reported = true;
+		StartupTimings.report(delegate.toString(), key, start, started, probeInstallMillis, recording);
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+}
@@ -0,0 +1,47 @@
+package exam.support;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.TestContainer;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.TestContainerFactory;
+import org.ops4j.pax.exam.spi.DefaultExamSystem;
+
+import exam.support.osgi.StartupRecorder;
+
+/**
+ * Adds the startup recorder bundle to the containers created by the delegate factory.
+ * See {@link StartupTimings}.
+ */
+final class TimedTestContainerFactory extends DelegatingTestContainerFactory {
+
+	TimedTestContainerFactory(TestContainerFactory delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public TestContainer[] create(ExamSystem system) {
+		final OptionSetKey key = OptionSetKey.of(system);
+		final Path recording = StartupTimings.newRecordingFile();
+		final ExamSystem timed;
+		try {
+			timed = DefaultExamSystem.create(OptionUtils.combine(system.getOptions(Option.class),
+					StartupTimings.recorderBundle(),
+					CoreOptions.frameworkProperty(StartupRecorder.FILE_PROPERTY).value(recording.toString())));
+		} catch (IOException e) {
+			throw new TestContainerException("Failed to add the startup recorder", e);
+		}
+		// usually there is only one container, otherwise they would have to share the recording file
+		final TestContainer[] containers = delegate.create(timed);
+		for (int i = 0; i < containers.length; i++) {
+			containers[i] = new TimedTestContainer(containers[i], key, recording);
+		}
+		return containers;
+	}
+
+}
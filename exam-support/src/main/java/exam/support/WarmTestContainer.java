@@ -0,0 +1,96 @@
+package exam.support;
+
+import java.io.InputStream;
+
+import org.ops4j.pax.exam.TestAddress;
+import org.ops4j.pax.exam.TestContainer;
+
+/**
+ * Wraps a test container that is kept running when the reactor stops it; 
+ * only the probe bundle is uninstalled. See {@link WarmTestContainerFactory}.
+ */
+final class WarmTestContainer implements TestContainer {
+
+	private final TestContainer delegate;
+	private final OptionSetKey key;
+	private boolean started;
+	private boolean probeInstalled;
+	private int reuseCount;
+
+	WarmTestContainer(TestContainer delegate, OptionSetKey key) {
+		this.delegate = delegate;
+		this.key = key;
+	}
+
+	@Override
+	public synchronized TestContainer start() {
+		if (!started) {
+			delegate.start();
+			started = true;
+		} else {
+			reuseCount++;
+			System.out.println("   Reusing warm container " + delegate + " for option set " + key + " (" + reuseCount + ")");
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized long install(InputStream stream) {
+		return delegate.install(stream);
+	}
+
+	@Override
+	public synchronized long install(String location, InputStream stream) {
+		return delegate.install(location, stream);
+	}
+
+	@Override
+	public synchronized long installProbe(InputStream stream) {
+		uninstallProbe();
+		final long id = delegate.installProbe(stream);
+		probeInstalled = true;
+		return id;
+	}
+
+	@Override
+	public synchronized void uninstallProbe() {
+		if (probeInstalled) {
+			probeInstalled = false;
+			delegate.uninstallProbe();
+		}
+	}
+
+	@Override
+	public void call(TestAddress address) {
+		delegate.call(address);
+	}
+
+	/**
+	 * Only removes the probe; the framework keeps running for the next test class 
+	 * with the same option set.
+	 */
+	@Override
+	public synchronized TestContainer stop() {
+		if (started)
+			uninstallProbe();
+		return this;
+	}
+
+	synchronized boolean isStarted() {
+		return started;
+	}
+
+	synchronized void shutdown() {
+		if (started) {
+			started = false;
+			probeInstalled = false;
+			delegate.stop();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Warm" + delegate;
+	}
+
+}
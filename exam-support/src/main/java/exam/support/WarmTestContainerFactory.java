@@ -0,0 +1,171 @@
+package exam.support;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamSystem;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.TestContainer;
+import org.ops4j.pax.exam.TestContainerException;
+import org.ops4j.pax.exam.TestContainerFactory;
+import org.ops4j.pax.exam.options.FrameworkPropertyOption;
+import org.ops4j.pax.exam.spi.DefaultExamSystem;
+import org.ops4j.pax.exam.spi.PaxExamRuntime;
+import org.osgi.framework.Constants;
+
+/**
+ * A container factory that keeps frameworks running across test classes. Classes whose 
+ * configuration methods return identical option sets (see {@link OptionSetKey}) share a single
+ * booted framework, only the probe bundle is exchanged between them. The frameworks are stopped
+ * when the JVM exits. Use it together with the PerClass reactor strategy:
+ * <pre>
+ * &#64;RunWith(PaxExam.class)
+ * &#64;ExamReactorStrategy(PerClass.class)
+ * &#64;ExamFactory(WarmTestContainerFactory.class)
+ * public class MyTest { ... }
+ * </pre>
+ * Set the system property {@value #WARM_PROPERTY} to false in order to boot a new framework for 
+ * every test class again. Each warm framework gets its own storage folder, a subfolder of the 
+ * configured one named after its option set key, so that test classes with different option sets
+ * do not interfere with each other.<br>
+ * The containers are created by a pipeline of optional stages, such as storage snapshots or startup
+ * timings, each of which is enabled by a system property; see the README for a list.<br>
+ * Note that state left behind by one test class (services, resources, configurations) is visible 
+ * to the next one.
+ */
+public class WarmTestContainerFactory implements TestContainerFactory {
+
+	public static final String WARM_PROPERTY = "exam.support.warm";
+	private static final Map<OptionSetKey, List<WarmTestContainer>> containers = new HashMap<>();
+	private static boolean shutdownHookRegistered;
+	// the optional stages of the container creation, outermost first; each one wraps the factory of
+	// the next stage, or returns it unchanged if it is disabled
+	private static final List<UnaryOperator<TestContainerFactory>> PIPELINE = Arrays.asList(
+			options(ArtifactCache::isEnabled, ArtifactCache::resolveOptions),
+			options(ParallelActivation::isEnabled, ParallelActivation::plan),
+			options(ClassLoadingProfiles::isEnabled, ClassLoadingProfiles::addProfiler),
+			factory -> StorageSnapshots.isEnabled() ? new SnapshotTestContainerFactory(factory) : factory,
+			factory -> StartupTimings.isEnabled() ? new TimedTestContainerFactory(factory) : factory,
+			factory -> InvocationChannel.isEnabled() && isForked(factory) ? new ChannelTestContainerFactory(factory) : factory);
+
+	@Override
+	public TestContainer[] create(ExamSystem system) {
+		final TestContainerFactory factory = PaxExamRuntime.getTestContainerFactory();
+		final boolean profile = ContainerProfiler.isEnabled();
+		if ("false".equalsIgnoreCase(System.getProperty(WARM_PROPERTY))) {
+			final TestContainer[] cold = createContainers(factory, system);
+			if (!profile)
+				return cold;
+			registerShutdownHook();
+			return ContainerProfiler.wrap(cold, factory.getClass().getName(), false);
+		}
+		final OptionSetKey key = OptionSetKey.of(system).with(factory.getClass().getName());
+		synchronized (containers) {
+			final List<WarmTestContainer> existing = containers.get(key);
+			if (existing != null)
+				return profile(existing, factory, profile);
+			final TestContainer[] delegates = createContainers(factory, ownStorage(system, key));
+			final List<WarmTestContainer> warm = new ArrayList<>(delegates.length);
+			for (TestContainer delegate : delegates) {
+				warm.add(new WarmTestContainer(delegate, key));
+			}
+			containers.put(key, warm);
+			registerShutdownHook();
+			return profile(warm, factory, profile);
+		}
+	}
+
+	private static TestContainer[] profile(List<WarmTestContainer> warm, TestContainerFactory factory, boolean profile) {
+		final TestContainer[] array = warm.toArray(new TestContainer[warm.size()]);
+		return profile ? ContainerProfiler.wrap(array, factory.getClass().getName(), true) : array;
+	}
+
+	private static void registerShutdownHook() {
+		synchronized (containers) {
+			if (shutdownHookRegistered)
+				return;
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				shutdownAll();
+				ContainerProfiler.write();
+			}, "warm-container-shutdown"));
+			shutdownHookRegistered = true;
+		}
+	}
+
+	private static TestContainer[] createContainers(TestContainerFactory factory, ExamSystem system) {
+		for (int i = PIPELINE.size() - 1; i >= 0; i--) {
+			factory = PIPELINE.get(i).apply(factory);
+		}
+		return factory.create(system);
+	}
+
+	private static UnaryOperator<TestContainerFactory> options(BooleanSupplier enabled, UnaryOperator<ExamSystem> stage) {
+		return factory -> !enabled.getAsBoolean() ? factory : new DelegatingTestContainerFactory(factory) {
+
+			@Override
+			public TestContainer[] create(ExamSystem system) {
+				return delegate.create(stage.apply(system));
+			}
+
+		};
+	}
+
+	private static boolean isForked(TestContainerFactory factory) {
+		return ContainerProfiler.FORKED.equals(ContainerProfiler.containerType(DelegatingTestContainerFactory.unwrap(factory).getClass().getName()));
+	}
+
+	/*
+	 * Moves the framework storage, if configured, into a subfolder per option set, since the warm
+	 * framework keeps using it until the JVM exits. Later options override earlier ones in both the
+	 * native and the forked container.
+	 */
+	private static ExamSystem ownStorage(ExamSystem system, OptionSetKey key) {
+		final FrameworkPropertyOption[] properties = OptionUtils.filter(FrameworkPropertyOption.class,
+				OptionUtils.expand(system.getOptions(Option.class)));
+		String storage = null;
+		for (FrameworkPropertyOption property : properties) {
+			if (Constants.FRAMEWORK_STORAGE.equals(property.getKey()))
+				storage = String.valueOf(property.getValue());
+		}
+		if (storage == null)
+			return system;
+		try {
+			return DefaultExamSystem.create(OptionUtils.combine(system.getOptions(Option.class),
+					CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE)
+						.value(Paths.get(storage).resolve(key.hash().substring(0, 12)).toString())));
+		} catch (IOException e) {
+			throw new TestContainerException("Failed to configure the framework storage for " + key, e);
+		}
+	}
+
+	/**
+	 * Stop all warm containers. This happens automatically on JVM shutdown.
+	 */
+	public static void shutdownAll() {
+		final List<WarmTestContainer> all = new ArrayList<>();
+		synchronized (containers) {
+			containers.values().forEach(all::addAll);
+			containers.clear();
+		}
+		for (WarmTestContainer container : all) {
+			final long t0 = System.nanoTime();
+			try {
+				container.shutdown();
+			} catch (RuntimeException e) {
+				System.err.println("Failed to stop container " + container + ": " + e);
+			}
+			if (ContainerProfiler.isEnabled())
+				ContainerProfiler.teardown(System.nanoTime() - t0);
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+package exam.support.activation;
+
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Starts a set of installed bundles concurrently, in the order of their dependencies. The bundles
+ * are resolved first, then their wires (Import-Package, Require-Bundle, Require-Capability) determine
+ * the activation plan: a list of layers, where each bundle only depends on bundles in earlier layers.
+ * The bundles of a layer are started on a thread pool, the next layer waits until the previous
+ * one has finished. Bundles in a dependency cycle are started one after another.<br>
+ * As bundle activator, it starts the bundles listed in the framework property {@value #BUNDLES_PROPERTY}
+ * (symbolic name and version, separated by a semicolon, comma separated), transiently, with the number
+ * of threads given by {@value #THREADS_PROPERTY}, and blocks the start level change until all of them
+ * are active. See exam.support.ParallelActivation.<br>
+ * Packaged into a bundle of its own, see {@link exam.support.SupportBundles}, so that it resolves
+ * regardless of the bundles it is going to start.
+ */
+public class ParallelActivator implements BundleActivator {
+
+	public static final String BUNDLES_PROPERTY = "exam.support.activation.bundles";
+	public static final String THREADS_PROPERTY = "exam.support.activation.threads";
+
+	@Override
+	public void start(BundleContext ctx) throws Exception {
+		final String list = ctx.getProperty(BUNDLES_PROPERTY);
+		if (list == null || list.isEmpty())
+			return;
+		final String threadsProperty = ctx.getProperty(THREADS_PROPERTY);
+		final int threads = threadsProperty != null ? Integer.parseInt(threadsProperty) : Runtime.getRuntime().availableProcessors();
+		final Set<String> ids = new HashSet<>();
+		for (String id : list.split(",")) {
+			ids.add(id.trim());
+		}
+		final List<Bundle> bundles = new ArrayList<>();
+		for (Bundle b : ctx.getBundles()) {
+			if (ids.contains(b.getSymbolicName() + ";" + b.getVersion()))
+				bundles.add(b);
+		}
+		final long start = System.nanoTime();
+		// the framework may start this bundle with less privileged bundles on the stack
+		final List<List<Bundle>> layers = AccessController.doPrivileged((PrivilegedExceptionAction<List<List<Bundle>>>) () -> {
+			final List<List<Bundle>> plan = plan(ctx, bundles);
+			final Map<Bundle, Throwable> failures = start(plan, threads, Bundle.START_TRANSIENT);
+			for (Map.Entry<Bundle, Throwable> failure : failures.entrySet()) {
+				System.err.println("Failed to start bundle " + failure.getKey().getSymbolicName() + ": " + failure.getValue());
+			}
+			return plan;
+		});
+		System.out.println("   Parallel activation of " + bundles.size() + " bundles in " + layers.size() + " layers with "
+				+ threads + " threads: " + (System.nanoTime() - start) / 1_000_000 + "ms");
+	}
+
+	@Override
+	public void stop(BundleContext ctx) throws Exception {
+	}
+
+	/**
+	 * Resolve the bundles and sort them into layers by their dependencies; fragments are left out.
+	 * @param ctx
+	 * @param bundles
+	 * @return
+	 * 		the layers; each bundle only depends on bundles of earlier layers, unless it is part of a cycle
+	 */
+	public static List<List<Bundle>> plan(BundleContext ctx, Collection<Bundle> bundles) {
+		ctx.getBundle(Constants.SYSTEM_BUNDLE_ID).adapt(FrameworkWiring.class).resolveBundles(bundles);
+		// bundle -> the bundles of the set it is wired to
+		final Map<Bundle, Set<Bundle>> dependencies = new LinkedHashMap<>();
+		for (Bundle b : bundles) {
+			final BundleRevision revision = b.adapt(BundleRevision.class);
+			if (revision == null || (revision.getTypes() & BundleRevision.TYPE_FRAGMENT) != 0)
+				continue;
+			dependencies.put(b, new LinkedHashSet<>());
+		}
+		for (Map.Entry<Bundle, Set<Bundle>> entry : dependencies.entrySet()) {
+			final BundleWiring wiring = entry.getKey().adapt(BundleWiring.class);
+			if (wiring == null) // not resolved
+				continue;
+			for (BundleWire wire : wiring.getRequiredWires(null)) {
+				final Bundle provider = wire.getProvider().getBundle();
+				if (!provider.equals(entry.getKey()) && dependencies.containsKey(provider))
+					entry.getValue().add(provider);
+			}
+		}
+		final List<List<Bundle>> layers = new ArrayList<>();
+		final Set<Bundle> placed = new HashSet<>();
+		while (placed.size() < dependencies.size()) {
+			final List<Bundle> layer = new ArrayList<>();
+			Bundle fewest = null;
+			int fewestCount = Integer.MAX_VALUE;
+			for (Map.Entry<Bundle, Set<Bundle>> entry : dependencies.entrySet()) {
+				if (placed.contains(entry.getKey()))
+					continue;
+				int missing = 0;
+				for (Bundle dependency : entry.getValue()) {
+					if (!placed.contains(dependency))
+						missing++;
+				}
+				if (missing == 0)
+					layer.add(entry.getKey());
+				else if (missing < fewestCount) {
+					fewest = entry.getKey();
+					fewestCount = missing;
+				}
+			}
+			// a cycle; break it at the bundle with the fewest missing dependencies
+			if (layer.isEmpty())
+				layer.add(fewest);
+			placed.addAll(layer);
+			layers.add(layer);
+		}
+		return layers;
+	}
+
+	/**
+	 * Start the bundles layer by layer, the bundles of a layer concurrently.
+	 * @param layers
+	 * @param threads
+	 * @param options
+	 * 		start options, see {@link Bundle#start(int)}
+	 * @return
+	 * 		the bundles that failed to start, and the reason
+	 * @throws InterruptedException
+	 */
+	public static Map<Bundle, Throwable> start(List<List<Bundle>> layers, int threads, int options) throws InterruptedException {
+		final Map<Bundle, Throwable> failures = new LinkedHashMap<>();
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			final Thread thread = new Thread(r, "exam-parallel-activation-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			for (List<Bundle> layer : layers) {
+				if (layer.size() == 1 || threads <= 1) {
+					for (Bundle b : layer) {
+						try {
+							b.start(options);
+						} catch (Exception e) {
+							failures.put(b, e);
+						}
+					}
+					continue;
+				}
+				final Map<Bundle, Future<?>> futures = new LinkedHashMap<>();
+				for (Bundle b : layer) {
+					futures.put(b, pool.submit(() -> {
+						b.start(options);
+						return null;
+					}));
+				}
+				for (Map.Entry<Bundle, Future<?>> future : futures.entrySet()) {
+					try {
+						future.getValue().get();
+					} catch (ExecutionException e) {
+						failures.put(future.getKey(), e.getCause());
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return failures;
+	}
+
+}
@@ -0,0 +1,240 @@
+package exam.support.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A minimal benchmark harness that runs inside the container, where JMH cannot fork its own JVMs.
+ * Every iteration invokes the operation {@link #batchSize(int) batchSize} times on the calling
+ * thread and measures the elapsed time and, where the JVM supports it, the bytes allocated by the
+ * thread. The first {@link #warmupIterations(int) warmup iterations} are discarded.<br>
+ * The default number of iterations can be overridden by the system properties
+ * {@value #WARMUP_PROPERTY} and {@value #ITERATIONS_PROPERTY}.
+ * <pre>
+ * final BenchmarkResult result = Benchmark.named("create")
+ * 		.param("treeSize", 1000)
+ * 		.afterIteration(() -&gt; deleteChildren())
+ * 		.run(i -&gt; parent.addDecorator("child" + i, StringResource.class));
+ * </pre>
+ */
+public final class Benchmark {
+
+	public static final String WARMUP_PROPERTY = "exam.benchmark.warmup";
+	public static final String ITERATIONS_PROPERTY = "exam.benchmark.iterations";
+	private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+	private final String name;
+	private final Map<String, Object> params = new LinkedHashMap<>();
+	private int warmupIterations = Integer.getInteger(WARMUP_PROPERTY, 3);
+	private int measurementIterations = Integer.getInteger(ITERATIONS_PROPERTY, 5);
+	private int batchSize = 1000;
+	private Action beforeIteration;
+	private Action afterIteration;
+	private boolean recordLatency;
+
+	@FunctionalInterface
+	public interface Operation {
+
+		/**
+		 * @param index
+		 * 		the invocation within the current iteration, starting at 0
+		 */
+		void run(int index) throws Exception;
+
+	}
+
+	@FunctionalInterface
+	public interface Action {
+
+		void run() throws Exception;
+
+	}
+
+	private Benchmark(String name) {
+		this.name = Objects.requireNonNull(name);
+	}
+
+	public static Benchmark named(String name) {
+		return new Benchmark(name);
+	}
+
+	/**
+	 * Add a parameter to the result, such as the size of the data set.
+	 */
+	public Benchmark param(String key, Object value) {
+		params.put(key, value);
+		return this;
+	}
+
+	public Benchmark warmupIterations(int warmupIterations) {
+		if (warmupIterations < 0)
+			throw new IllegalArgumentException("Negative number of iterations: " + warmupIterations);
+		this.warmupIterations = warmupIterations;
+		return this;
+	}
+
+	public Benchmark measurementIterations(int measurementIterations) {
+		if (measurementIterations <= 0)
+			throw new IllegalArgumentException("At least one iteration required: " + measurementIterations);
+		this.measurementIterations = measurementIterations;
+		return this;
+	}
+
+	/**
+	 * @param batchSize
+	 * 		the number of invocations per iteration
+	 */
+	public Benchmark batchSize(int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * @param beforeIteration
+	 * 		executed before each iteration, not included in the measurement
+	 */
+	public Benchmark beforeIteration(Action beforeIteration) {
+		this.beforeIteration = beforeIteration;
+		return this;
+	}
+
+	/**
+	 * @param afterIteration
+	 * 		executed after each iteration, not included in the measurement
+	 */
+	public Benchmark afterIteration(Action afterIteration) {
+		this.afterIteration = afterIteration;
+		return this;
+	}
+
+	/**
+	 * Record the duration of every single invocation in a {@link Histogram}. This adds the cost
+	 * of two calls to {@link System#nanoTime()} per invocation to the throughput measurement.
+	 */
+	public Benchmark recordLatency() {
+		this.recordLatency = true;
+		return this;
+	}
+
+	public BenchmarkResult run(Operation operation) throws Exception {
+		final long[] nanos = new long[measurementIterations];
+		final long[] allocated = new long[measurementIterations];
+		final Histogram latency = recordLatency ? new Histogram() : null;
+		final Histogram discarded = recordLatency ? new Histogram() : null;
+		for (int it = -warmupIterations; it < measurementIterations; it++) {
+			if (beforeIteration != null)
+				beforeIteration.run();
+			final long bytesBefore = allocatedBytes();
+			final long start = System.nanoTime();
+			if (recordLatency) {
+				final Histogram histogram = it >= 0 ? latency : discarded;
+				for (int i = 0; i < batchSize; i++) {
+					final long t0 = System.nanoTime();
+					operation.run(i);
+					histogram.record(System.nanoTime() - t0);
+				}
+			} else {
+				for (int i = 0; i < batchSize; i++) {
+					operation.run(i);
+				}
+			}
+			final long duration = System.nanoTime() - start;
+			final long bytesAfter = allocatedBytes();
+			if (afterIteration != null)
+				afterIteration.run();
+			if (it >= 0) {
+				nanos[it] = duration;
+				allocated[it] = bytesBefore < 0 || bytesAfter < 0 ? -1 : bytesAfter - bytesBefore;
+			}
+		}
+		return new BenchmarkResult(name, params, batchSize, nanos, allocated, latency);
+	}
+
+	/**
+	 * Measure a single execution of the action, e.g. a setup step whose cost is of interest as well.
+	 */
+	public static BenchmarkResult once(String name, Map<String, Object> params, Action action) throws Exception {
+		final long bytesBefore = allocatedBytes();
+		final long start = System.nanoTime();
+		action.run();
+		final long duration = System.nanoTime() - start;
+		final long bytesAfter = allocatedBytes();
+		return new BenchmarkResult(name, params == null ? new LinkedHashMap<>() : params, 1, new long[] { duration },
+				new long[] { bytesBefore < 0 || bytesAfter < 0 ? -1 : bytesAfter - bytesBefore }, null);
+	}
+
+	/**
+	 * Create a result from measurements taken outside the harness, e.g. with several threads
+	 * or for asynchronous operations.
+	 * @param operations
+	 * 		the number of operations executed in the given time
+	 * @param nanos
+	 * 		the elapsed time
+	 * @param latency
+	 * 		may be null
+	 */
+	public static BenchmarkResult result(String name, Map<String, Object> params, int operations, long nanos, Histogram latency) {
+		return new BenchmarkResult(name, params == null ? new LinkedHashMap<>() : params, Math.max(1, operations),
+				new long[] { Math.max(1, nanos) }, new long[] { -1 }, latency);
+	}
+
+	/**
+	 * @return
+	 * 		the integer values of a comma separated system property, such as data set sizes,
+	 * 		or the defaults if the property is not set
+	 */
+	public static int[] sizes(String property, int... defaults) {
+		final String value = System.getProperty(property);
+		if (value == null || value.trim().isEmpty())
+			return defaults;
+		return Arrays.stream(value.split(","))
+			.map(String::trim)
+			.filter(s -> !s.isEmpty())
+			.mapToInt(Integer::parseInt)
+			.toArray();
+	}
+
+	/**
+	 * @return
+	 * 		the bytes allocated by the current thread so far, or -1 if the JVM does not provide this
+	 */
+	public static long allocatedBytes() {
+		if (ALLOCATED_BYTES == null)
+			return -1;
+		final long threadId = Thread.currentThread().getId();
+		return AccessController.doPrivileged((PrivilegedAction<Long>) () -> {
+			try {
+				return (Long) ALLOCATED_BYTES.invoke(ManagementFactory.getThreadMXBean(), threadId);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				return -1L;
+			}
+		});
+	}
+
+	// com.sun.management is not imported by bundles, hence it is loaded from the system class loader
+	private static Method allocatedBytesMethod() {
+		return AccessController.doPrivileged((PrivilegedAction<Method>) () -> {
+			try {
+				final Class<?> clazz = ClassLoader.getSystemClassLoader().loadClass("com.sun.management.ThreadMXBean");
+				final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+				if (!clazz.isInstance(bean))
+					return null;
+				final Method method = clazz.getMethod("getThreadAllocatedBytes", long.class);
+				method.invoke(bean, Thread.currentThread().getId());
+				return method;
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				return null;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,145 @@
+package exam.support.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the latest results of two benchmark suites, which typically run in different
+ * containers, such as the same workload with and without security. Results are matched by
+ * name and parameters. Since the order in which the containers run is not known, both of them
+ * should call {@link #compare(String, String, String)} after writing their report; the last
+ * call then sees the results of both.
+ */
+public final class BenchmarkComparison {
+
+	private static final String[] VALUES = { "opsPerSecond", "nanosPerOp", "bytesPerOp", "latencyP50Us", "latencyP99Us" };
+
+	private BenchmarkComparison() {}
+
+	/**
+	 * Write the comparison to <code>&lt;name&gt;.csv</code> in the report folder, see {@link BenchmarkReport}.
+	 * @param baselineSuite
+	 * @param candidateSuite
+	 * @param name
+	 * @return
+	 * 		the comparison file, or null if one of the suites has no results yet
+	 */
+	public static Path compare(String baselineSuite, String candidateSuite, String name) throws IOException {
+		try {
+			return AccessController.doPrivileged((PrivilegedExceptionAction<Path>) () -> {
+				final Path baselineFile = BenchmarkReport.latest(baselineSuite);
+				final Path candidateFile = BenchmarkReport.latest(candidateSuite);
+				if (!Files.exists(baselineFile) || !Files.exists(candidateFile))
+					return null;
+				final Map<String, Map<String, String>> baseline = read(baselineFile);
+				final Map<String, Map<String, String>> candidate = read(candidateFile);
+				final List<String> rows = new ArrayList<>();
+				final StringBuilder header = new StringBuilder("benchmark");
+				for (String value : VALUES) {
+					header.append(',').append(baselineSuite).append(':').append(value)
+						.append(',').append(candidateSuite).append(':').append(value);
+				}
+				header.append(",timePerOpChangePercent,p99ChangePercent");
+				rows.add(header.toString());
+				for (Map.Entry<String, Map<String, String>> entry : baseline.entrySet()) {
+					final Map<String, String> b = entry.getValue();
+					final Map<String, String> c = candidate.get(entry.getKey());
+					if (c == null)
+						continue;
+					final StringBuilder row = new StringBuilder(Escaping.csv(entry.getKey()));
+					for (String value : VALUES) {
+						row.append(',').append(b.getOrDefault(value, "")).append(',').append(c.getOrDefault(value, ""));
+					}
+					final double timeChange = change(b.get("nanosPerOp"), c.get("nanosPerOp"));
+					final double p99Change = change(b.get("latencyP99Us"), c.get("latencyP99Us"));
+					row.append(',').append(format(timeChange)).append(',').append(format(p99Change));
+					rows.add(row.toString());
+					System.out.println("   " + entry.getKey() + ": " + candidateSuite + " vs " + baselineSuite + " "
+							+ format(timeChange) + "% time per operation"
+							+ (Double.isNaN(p99Change) ? "" : ", " + format(p99Change) + "% p99 latency"));
+				}
+				final Path target = Paths.get(System.getProperty(BenchmarkReport.DIR_PROPERTY, BenchmarkReport.DEFAULT_DIR))
+						.resolve(name + ".csv");
+				Files.write(target, rows, StandardCharsets.UTF_8);
+				System.out.println("   Benchmark comparison written to " + target);
+				return target;
+			});
+		} catch (PrivilegedActionException e) {
+			throw (IOException) e.getException();
+		}
+	}
+
+	// keyed by name and parameters, i.e. all columns before "iterations"
+	private static Map<String, Map<String, String>> read(Path csv) throws IOException {
+		final List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+		final Map<String, Map<String, String>> results = new LinkedHashMap<>();
+		if (lines.isEmpty())
+			return results;
+		final List<String> header = split(lines.get(0));
+		final int keyColumns = header.indexOf("iterations");
+		for (String line : lines.subList(1, lines.size())) {
+			final List<String> cells = split(line);
+			final StringBuilder key = new StringBuilder(cells.get(0));
+			for (int i = 1; i < keyColumns; i++) {
+				if (!cells.get(i).isEmpty())
+					key.append(' ').append(header.get(i)).append('=').append(cells.get(i));
+			}
+			final Map<String, String> values = new LinkedHashMap<>();
+			for (int i = keyColumns; i < header.size() && i < cells.size(); i++) {
+				values.put(header.get(i), cells.get(i));
+			}
+			results.put(key.toString(), values);
+		}
+		return results;
+	}
+
+	private static List<String> split(String line) {
+		final List<String> cells = new ArrayList<>();
+		final StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					cell.append('"');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				cells.add(cell.toString());
+				cell.setLength(0);
+			} else {
+				cell.append(c);
+			}
+		}
+		cells.add(cell.toString());
+		return cells;
+	}
+
+	private static double change(String baseline, String candidate) {
+		try {
+			final double b = Double.parseDouble(baseline);
+			final double c = Double.parseDouble(candidate);
+			return b <= 0 ? Double.NaN : (c / b - 1) * 100;
+		} catch (NullPointerException | NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	private static String format(double value) {
+		return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%+.1f", value);
+	}
+
+}
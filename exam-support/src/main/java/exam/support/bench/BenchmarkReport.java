@@ -0,0 +1,205 @@
+package exam.support.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+
+/**
+ * Collects the results of a benchmark suite and writes them to the folder {@value #DEFAULT_DIR},
+ * relative to the working directory of the container, or to the folder specified by the
+ * system property {@value #DIR_PROPERTY}. One JSON and one CSV file is written per suite; the
+ * CSV file is also copied to <code>&lt;suite&gt;-latest.csv</code>, see {@link BenchmarkComparison}.
+ */
+public final class BenchmarkReport {
+
+	public static final String DIR_PROPERTY = "exam.benchmark.dir";
+	public static final String DEFAULT_DIR = "target/benchmarks";
+
+	private final String suite;
+	private final Map<String, Object> environment = new LinkedHashMap<>();
+	private final List<BenchmarkResult> results = new ArrayList<>();
+
+	/**
+	 * @param suite
+	 * 		the name of the suite, used as file name prefix
+	 * @param ctx
+	 * 		used to record the framework implementation and the security setting; may be null
+	 */
+	public BenchmarkReport(String suite, BundleContext ctx) {
+		this.suite = suite;
+		environment.put("java", System.getProperty("java.version"));
+		environment.put("processors", Runtime.getRuntime().availableProcessors());
+		environment.put("maxHeap", Runtime.getRuntime().maxMemory());
+		environment.put("securityManager", System.getSecurityManager() != null);
+		if (ctx != null) {
+			final Bundle framework = ctx.getBundle(Constants.SYSTEM_BUNDLE_ID);
+			environment.put("framework", framework.getSymbolicName() + " " + framework.getVersion());
+			environment.put("frameworkSecurity", ctx.getProperty(Constants.FRAMEWORK_SECURITY));
+		}
+	}
+
+	/**
+	 * Add a value describing the setup, such as a configuration property.
+	 */
+	public BenchmarkReport environment(String key, Object value) {
+		environment.put(key, value);
+		return this;
+	}
+
+	/**
+	 * Add the result and print it to the console.
+	 * @return
+	 * 		the result
+	 */
+	public BenchmarkResult add(BenchmarkResult result) {
+		System.out.println("   " + result);
+		synchronized (results) {
+			results.add(result);
+		}
+		return result;
+	}
+
+	public List<BenchmarkResult> getResults() {
+		synchronized (results) {
+			return new ArrayList<>(results);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the JSON file
+	 */
+	public Path write() throws IOException {
+		final List<BenchmarkResult> results = getResults();
+		final Path folder = Paths.get(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+		final String name = suite + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+		final Path json = folder.resolve(name + ".json");
+		final Path csv = folder.resolve(name + ".csv");
+		final Path latest = latest(suite);
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"suite\": ").append(Escaping.json(suite)).append(",\n");
+		sb.append("  \"environment\": ").append(toJson(environment)).append(",\n");
+		sb.append("  \"results\": [");
+		for (int i = 0; i < results.size(); i++) {
+			final BenchmarkResult r = results.get(i);
+			sb.append(i == 0 ? "\n" : ",\n")
+				.append("    { \"name\": ").append(Escaping.json(r.getName()))
+				.append(", \"params\": ").append(toJson(r.getParams()))
+				.append(", \"iterations\": ").append(r.getIterations())
+				.append(", \"batchSize\": ").append(r.getBatchSize())
+				.append(", \"opsPerSecond\": ").append(number(r.getOpsPerSecond()))
+				.append(", \"opsPerSecondError\": ").append(number(r.getOpsPerSecondError()))
+				.append(", \"nanosPerOp\": ").append(number(r.getNanosPerOp()))
+				.append(", \"bytesPerOp\": ").append(number(r.getBytesPerOp()))
+				.append(", \"allocationRateMBs\": ").append(number(r.getAllocationRate()))
+				.append(", \"latencyMicros\": ").append(r.getLatency() == null ? "null" : toJson(r.getLatency().toMicros()))
+				.append(", \"metrics\": ").append(toJson(r.getMetrics()))
+				.append(" }");
+		}
+		sb.append("\n  ]\n}\n");
+
+		// one column per parameter and metric found in any of the results
+		final TreeSet<String> params = new TreeSet<>();
+		final TreeSet<String> metrics = new TreeSet<>();
+		for (BenchmarkResult r : results) {
+			params.addAll(r.getParams().keySet());
+			metrics.addAll(r.getMetrics().keySet());
+		}
+		final List<String> rows = new ArrayList<>(results.size() + 1);
+		final StringBuilder header = new StringBuilder("name");
+		params.forEach(p -> header.append(',').append(p));
+		header.append(",iterations,batchSize,opsPerSecond,opsPerSecondError,nanosPerOp,bytesPerOp,allocationRateMBs");
+		header.append(",latencyP50Us,latencyP90Us,latencyP99Us,latencyMaxUs");
+		metrics.forEach(m -> header.append(',').append(m));
+		rows.add(header.toString());
+		for (BenchmarkResult r : results) {
+			final StringBuilder row = new StringBuilder(r.getName());
+			params.forEach(p -> row.append(',').append(csvValue(r.getParams().get(p))));
+			row.append(',').append(r.getIterations()).append(',').append(r.getBatchSize())
+				.append(',').append(number(r.getOpsPerSecond())).append(',').append(number(r.getOpsPerSecondError()))
+				.append(',').append(number(r.getNanosPerOp())).append(',').append(number(r.getBytesPerOp()))
+				.append(',').append(number(r.getAllocationRate()));
+			final Histogram latency = r.getLatency();
+			if (latency == null)
+				row.append(",,,,");
+			else
+				row.append(',').append(number(latency.getPercentile(50) / 1000.0)).append(',').append(number(latency.getPercentile(90) / 1000.0))
+					.append(',').append(number(latency.getPercentile(99) / 1000.0)).append(',').append(number(latency.getMax() / 1000.0));
+			metrics.forEach(m -> row.append(',').append(csvValue(r.getMetrics().get(m))));
+			rows.add(row.toString());
+		}
+		try {
+			AccessController.doPrivileged((PrivilegedExceptionAction<Void>) () -> {
+				Files.createDirectories(folder);
+				Files.write(json, sb.toString().getBytes(StandardCharsets.UTF_8));
+				Files.write(csv, rows, StandardCharsets.UTF_8);
+				Files.copy(csv, latest, StandardCopyOption.REPLACE_EXISTING);
+				return null;
+			});
+		} catch (PrivilegedActionException e) {
+			throw (IOException) e.getException();
+		}
+		System.out.println("   Benchmark report written to " + json);
+		return json;
+	}
+
+	static Path latest(String suite) {
+		return Paths.get(System.getProperty(DIR_PROPERTY, DEFAULT_DIR)).resolve(suite + "-latest.csv");
+	}
+
+	private static String toJson(Map<String, Object> map) {
+		final StringBuilder sb = new StringBuilder("{");
+		boolean first = true;
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			if (!first)
+				sb.append(", ");
+			first = false;
+			sb.append(Escaping.json(entry.getKey())).append(": ");
+			final Object value = entry.getValue();
+			if (value instanceof Number && !(value instanceof Double || value instanceof Float))
+				sb.append(value);
+			else if (value instanceof Number)
+				sb.append(number(((Number) value).doubleValue()));
+			else if (value instanceof Boolean)
+				sb.append(value);
+			else
+				sb.append(Escaping.json(value == null ? null : value.toString()));
+		}
+		return sb.append('}').toString();
+	}
+
+	private static String number(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return "null";
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	private static String csvValue(Object value) {
+		if (value == null)
+			return "";
+		if (value instanceof Double || value instanceof Float)
+			return number(((Number) value).doubleValue());
+		return Escaping.csv(value.toString());
+	}
+
+}
@@ -0,0 +1,144 @@
+package exam.support.bench;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The measurements of a single {@link Benchmark} run. Throughput figures are averaged over the
+ * measurement iterations; allocation figures are -1 if the JVM does not report allocated bytes.
+ */
+public final class BenchmarkResult {
+
+	private final String name;
+	private final Map<String, Object> params;
+	private final Map<String, Object> metrics = new LinkedHashMap<>();
+	private final int batchSize;
+	private final long[] nanos;
+	private final long[] allocated;
+	private final Histogram latency;
+
+	BenchmarkResult(String name, Map<String, Object> params, int batchSize, long[] nanos, long[] allocated, Histogram latency) {
+		this.name = name;
+		this.params = Collections.unmodifiableMap(new LinkedHashMap<>(params));
+		this.batchSize = batchSize;
+		this.nanos = nanos;
+		this.allocated = allocated;
+		this.latency = latency;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Map<String, Object> getParams() {
+		return params;
+	}
+
+	/**
+	 * @return
+	 * 		additional values reported by the benchmark, such as heap or thread counts
+	 */
+	public Map<String, Object> getMetrics() {
+		return Collections.unmodifiableMap(metrics);
+	}
+
+	/**
+	 * Add a value measured outside the harness to the result.
+	 */
+	public BenchmarkResult metric(String key, Object value) {
+		metrics.put(key, value);
+		return this;
+	}
+
+	/**
+	 * @return
+	 * 		the latencies of the single invocations, or null if they were not recorded
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getIterations() {
+		return nanos.length;
+	}
+
+	/**
+	 * @return
+	 * 		the mean throughput of the measurement iterations
+	 */
+	public double getOpsPerSecond() {
+		double sum = 0;
+		for (long n : nanos) {
+			sum += batchSize * 1e9 / n;
+		}
+		return sum / nanos.length;
+	}
+
+	/**
+	 * @return
+	 * 		the standard deviation of the throughput over the iterations
+	 */
+	public double getOpsPerSecondError() {
+		if (nanos.length < 2)
+			return 0;
+		final double mean = getOpsPerSecond();
+		double sum = 0;
+		for (long n : nanos) {
+			final double diff = batchSize * 1e9 / n - mean;
+			sum += diff * diff;
+		}
+		return Math.sqrt(sum / (nanos.length - 1));
+	}
+
+	public double getNanosPerOp() {
+		return (double) total(nanos) / nanos.length / batchSize;
+	}
+
+	public double getBytesPerOp() {
+		for (long a : allocated) {
+			if (a < 0)
+				return -1;
+		}
+		return (double) total(allocated) / allocated.length / batchSize;
+	}
+
+	/**
+	 * @return
+	 * 		allocated megabytes per second, or -1 if unknown
+	 */
+	public double getAllocationRate() {
+		if (getBytesPerOp() < 0)
+			return -1;
+		return total(allocated) * 1e9 / total(nanos) / (1024 * 1024);
+	}
+
+	private static long total(long[] values) {
+		long sum = 0;
+		for (long v : values) {
+			sum += v;
+		}
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(name);
+		if (!params.isEmpty())
+			sb.append(' ').append(params);
+		sb.append(": ").append(String.format("%.1f +- %.1f ops/s, %.3f us/op", getOpsPerSecond(), getOpsPerSecondError(), getNanosPerOp() / 1000));
+		final double bytesPerOp = getBytesPerOp();
+		if (bytesPerOp >= 0)
+			sb.append(String.format(", %.0f B/op, %.1f MB/s", bytesPerOp, getAllocationRate()));
+		if (latency != null)
+			sb.append(", ").append(latency);
+		if (!metrics.isEmpty())
+			sb.append(", ").append(metrics);
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,39 @@
+package exam.support.bench;
+
+/**
+ * String escaping for the JSON and CSV reports of the benchmarks and the host side measurements.
+ */
+public final class Escaping {
+
+	private Escaping() {}
+
+	/**
+	 * @return
+	 * 		the value as a JSON string literal, or <code>null</code>
+	 */
+	public static String json(String value) {
+		if (value == null)
+			return "null";
+		final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * @return
+	 * 		the value as a CSV field, quoted only if it contains a comma or a quote
+	 */
+	public static String csv(String value) {
+		if (value == null)
+			return "";
+		return value.indexOf(',') >= 0 || value.indexOf('"') >= 0 ? '"' + value.replace("\"", "\"\"") + '"' : value;
+	}
+
+}
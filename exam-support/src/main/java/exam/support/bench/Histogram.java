@@ -0,0 +1,129 @@
+package exam.support.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram with logarithmic buckets, each of them divided into linear sub-buckets,
+ * similar to an HdrHistogram with a precision of about two significant digits. Values are
+ * nanoseconds; the relative error of the percentiles is below 1/32.
+ * Recording is lock-free and may happen from several threads concurrently.
+ */
+public final class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// values below SUB_BUCKETS are recorded exactly, above that SUB_BUCKETS / 2 buckets per power of two
+	private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS / 2;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		final long value = Math.max(0, nanos);
+		counts.incrementAndGet(index(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long previous;
+		while (value > (previous = max.get())) {
+			if (max.compareAndSet(previous, value))
+				break;
+		}
+	}
+
+	/**
+	 * Add all values recorded by the other histogram to this one.
+	 */
+	public void add(Histogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			final long c = other.counts.get(i);
+			if (c > 0)
+				counts.addAndGet(i, c);
+		}
+		count.addAndGet(other.count.get());
+		sum.addAndGet(other.sum.get());
+		long previous;
+		final long otherMax = other.max.get();
+		while (otherMax > (previous = max.get())) {
+			if (max.compareAndSet(previous, otherMax))
+				break;
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		final long c = count.get();
+		return c == 0 ? 0 : (double) sum.get() / c;
+	}
+
+	/**
+	 * @param percentile
+	 * 		between 0 and 100
+	 * @return
+	 * 		the upper bound of the bucket containing the percentile, in nanoseconds
+	 */
+	public long getPercentile(double percentile) {
+		final long total = count.get();
+		if (total == 0)
+			return 0;
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * @return
+	 * 		the mean, the usual percentiles and the maximum in microseconds
+	 */
+	public Map<String, Object> toMicros() {
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put("count", getCount());
+		map.put("mean", getMean() / 1000);
+		map.put("p50", getPercentile(50) / 1000.0);
+		map.put("p90", getPercentile(90) / 1000.0);
+		map.put("p99", getPercentile(99) / 1000.0);
+		map.put("p99.9", getPercentile(99.9) / 1000.0);
+		map.put("max", getMax() / 1000.0);
+		return map;
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+		final int subBucket = (int) (value >>> exponent) - SUB_BUCKETS / 2;
+		return SUB_BUCKETS + (exponent - 1) * (SUB_BUCKETS / 2) + subBucket;
+	}
+
+	static long upperBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		final int exponent = (index - SUB_BUCKETS) / (SUB_BUCKETS / 2) + 1;
+		final long subBucket = (index - SUB_BUCKETS) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+		return ((subBucket + 1) << exponent) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "p50 %.1f us, p99 %.1f us, max %.1f us (%d values)",
+				getPercentile(50) / 1000.0, getPercentile(99) / 1000.0, getMax() / 1000.0, getCount());
+	}
+
+}
@@ -0,0 +1,173 @@
+package exam.support.channel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Container side of the invocation channel, see exam.support.InvocationChannel. On activation, it
+ * connects to the port given by the framework property {@value #PORT_PROPERTY} on the loopback
+ * interface and then executes the probe invocations sent by the host, one after the other.<br>
+ * Each request consists of the probe signature (UTF) and the invocation arguments (an object);
+ * each response of a success flag, followed in case of a failure by the serialized exception
+ * (a byte array, null if it is not serializable) and its stack trace (a string).<br>
+ * Packaged into a bundle of its own, see {@link exam.support.SupportBundles}. The Pax Exam API is not wired
+ * to that bundle, hence the probe invoker service is looked up by name and called reflectively.
+ */
+public class ProbeInvocationEndpoint implements BundleActivator {
+
+	public static final String PORT_PROPERTY = "exam.support.channel.port";
+	public static final String TIMEOUT_PROPERTY = "exam.support.channel.timeout";
+	private static final String PROBE_INVOKER = "org.ops4j.pax.exam.ProbeInvoker";
+	private static final String PROBE_SIGNATURE = "Probe-Signature";
+	private static final long DEFAULT_TIMEOUT = 10000;
+
+	// probe signature -> invoker service; only accessed by the channel thread
+	private final Map<String, ServiceReference<?>> invokers = new HashMap<>();
+	private volatile BundleContext ctx;
+	private volatile Socket socket;
+	private long timeout = DEFAULT_TIMEOUT;
+
+	@Override
+	public void start(BundleContext ctx) throws Exception {
+		final String port = ctx.getProperty(PORT_PROPERTY);
+		if (port == null)
+			return;
+		final String timeout = ctx.getProperty(TIMEOUT_PROPERTY);
+		if (timeout != null)
+			this.timeout = Long.parseLong(timeout);
+		this.ctx = ctx;
+		this.socket = AccessController.doPrivileged((PrivilegedExceptionAction<Socket>) () -> {
+			final Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+			socket.setTcpNoDelay(true);
+			return socket;
+		});
+		final Thread thread = new Thread(this::serve, "exam-invocation-channel");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void stop(BundleContext ctx) throws Exception {
+		final Socket socket = this.socket;
+		this.socket = null;
+		this.ctx = null;
+		if (socket != null)
+			socket.close();
+	}
+
+	private void serve() {
+		final Socket socket = this.socket;
+		if (socket == null)
+			return;
+		try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			out.flush();
+			try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()))) {
+				while (true) {
+					final String signature;
+					final Object[] args;
+					try {
+						signature = in.readUTF();
+						args = (Object[]) in.readObject();
+					} catch (EOFException e) {
+						return;
+					}
+					Throwable failure = null;
+					try {
+						invoke(signature, args);
+					} catch (Throwable e) {
+						failure = e;
+					}
+					out.writeBoolean(failure == null);
+					if (failure != null) {
+						out.writeObject(serialize(failure));
+						out.writeObject(stackTrace(failure));
+					}
+					// the responses must not refer to objects from earlier invocations
+					out.reset();
+					out.flush();
+				}
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			if (this.socket != null)
+				System.err.println("Invocation channel failed: " + e);
+		}
+	}
+
+	private void invoke(String signature, Object[] args) throws Exception {
+		final BundleContext ctx = this.ctx;
+		if (ctx == null)
+			throw new IllegalStateException("Invocation channel closed");
+		ServiceReference<?> ref = invokers.get(signature);
+		// the probe is replaced between test classes
+		if (ref == null || ref.getBundle() == null) {
+			ref = findInvoker(ctx, signature);
+			invokers.put(signature, ref);
+		}
+		final Object invoker = ctx.getService(ref);
+		if (invoker == null)
+			throw new IllegalStateException("Probe invoker " + signature + " has been unregistered");
+		try {
+			final Method call = invoker.getClass().getMethod("call", Object[].class);
+			call.invoke(invoker, new Object[] { args });
+		} catch (InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		} finally {
+			ctx.ungetService(ref);
+		}
+	}
+
+	private ServiceReference<?> findInvoker(BundleContext ctx, String signature) throws Exception {
+		final String filter = "(" + PROBE_SIGNATURE + "=" + signature + ")";
+		final long end = System.currentTimeMillis() + timeout;
+		while (true) {
+			// the invoker class of the probe need not be wired to this bundle
+			final ServiceReference<?>[] refs = ctx.getAllServiceReferences(PROBE_INVOKER, filter);
+			if (refs != null && refs.length > 0)
+				return refs[0];
+			if (System.currentTimeMillis() > end)
+				throw new IllegalStateException("Probe invoker " + signature + " not found within " + timeout + "ms");
+			Thread.sleep(10);
+		}
+	}
+
+	private static byte[] serialize(Throwable failure) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(failure);
+		} catch (IOException e) {
+			return null;
+		}
+		return bytes.toByteArray();
+	}
+
+	private static String stackTrace(Throwable failure) {
+		final StringWriter writer = new StringWriter();
+		failure.printStackTrace(new PrintWriter(writer));
+		return writer.toString();
+	}
+
+}
@@ -0,0 +1,176 @@
+package exam.support.osgi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.osgi.framework.startlevel.FrameworkStartLevel;
+
+/**
+ * Records bundle and framework events inside the container, from its own activation until the 
+ * Pax Exam probe is installed, and writes them to the file specified by the framework property 
+ * {@value #FILE_PROPERTY}. Installed in every container by the host side timing support, 
+ * see exam.support.StartupTimings.<br>
+ * The file contains one tab separated line per event and per bundle; all times are 
+ * in milliseconds since the epoch, -1 if unknown:
+ * <pre>
+ * event	&lt;time&gt;	&lt;name&gt;
+ * bundle	&lt;id&gt;	&lt;symbolic name&gt;	&lt;version&gt;	&lt;start level&gt;	&lt;installed&gt;	&lt;resolved&gt;	&lt;starting&gt;	&lt;started&gt;	&lt;first service&gt;	&lt;services&gt;
+ * </pre>
+ * Packaged into a bundle of its own, see {@link exam.support.SupportBundles}.
+ */
+public class StartupRecorder implements BundleActivator, SynchronousBundleListener, FrameworkListener, ServiceListener {
+
+	public static final String FILE_PROPERTY = "exam.support.timing.file";
+	private static final String PROBE_PREFIX = "PAXEXAM-PROBE";
+	private static final int RESOLVED = 0;
+	private static final int STARTING = 1;
+	private static final int STARTED = 2;
+	private static final int FIRST_SERVICE = 3;
+	private static final int SERVICES = 4;
+
+	private final Map<Long, long[]> bundles = new ConcurrentHashMap<>();
+	private final List<String> events = new ArrayList<>();
+	private volatile BundleContext ctx;
+	private volatile Path file;
+	private volatile boolean recording;
+
+	@Override
+	public void start(BundleContext ctx) throws Exception {
+		final String file = ctx.getProperty(FILE_PROPERTY);
+		if (file == null)
+			return;
+		this.ctx = ctx;
+		this.file = Paths.get(file);
+		this.recording = true;
+		event("recorder-activated");
+		ctx.addBundleListener(this);
+		ctx.addFrameworkListener(this);
+		ctx.addServiceListener(this);
+	}
+
+	@Override
+	public void stop(BundleContext ctx) throws Exception {
+		if (recording)
+			write();
+		this.ctx = null;
+	}
+
+	@Override
+	public void bundleChanged(BundleEvent event) {
+		if (!recording)
+			return;
+		final Bundle bundle = event.getBundle();
+		switch (event.getType()) {
+		case BundleEvent.INSTALLED:
+			final String bsn = bundle.getSymbolicName();
+			if (bsn != null && bsn.startsWith(PROBE_PREFIX)) {
+				event("probe-installed");
+				write();
+			}
+			break;
+		case BundleEvent.RESOLVED:
+			times(bundle)[RESOLVED] = System.currentTimeMillis();
+			break;
+		case BundleEvent.STARTING:
+			times(bundle)[STARTING] = System.currentTimeMillis();
+			break;
+		case BundleEvent.STARTED:
+			times(bundle)[STARTED] = System.currentTimeMillis();
+			break;
+		}
+	}
+
+	@Override
+	public void serviceChanged(ServiceEvent event) {
+		if (!recording || event.getType() != ServiceEvent.REGISTERED)
+			return;
+		final long[] times = times(event.getServiceReference().getBundle());
+		synchronized (times) {
+			if (times[FIRST_SERVICE] < 0)
+				times[FIRST_SERVICE] = System.currentTimeMillis();
+			times[SERVICES]++;
+		}
+	}
+
+	@Override
+	public void frameworkEvent(FrameworkEvent event) {
+		if (!recording)
+			return;
+		switch (event.getType()) {
+		case FrameworkEvent.STARTED:
+			event("framework-started");
+			break;
+		case FrameworkEvent.STARTLEVEL_CHANGED:
+			event("start-level-" + event.getBundle().adapt(FrameworkStartLevel.class).getStartLevel());
+			break;
+		}
+	}
+
+	private long[] times(Bundle bundle) {
+		return bundles.computeIfAbsent(bundle.getBundleId(), id -> {
+			final long[] times = new long[SERVICES + 1];
+			Arrays.fill(times, -1);
+			times[SERVICES] = 0;
+			return times;
+		});
+	}
+
+	private void event(String name) {
+		synchronized (events) {
+			events.add("event\t" + System.currentTimeMillis() + "\t" + name);
+		}
+	}
+
+	private synchronized void write() {
+		final BundleContext ctx = this.ctx;
+		if (!recording || ctx == null)
+			return;
+		recording = false;
+		final List<String> lines;
+		synchronized (events) {
+			lines = new ArrayList<>(events);
+		}
+		for (Bundle b : ctx.getBundles()) {
+			final String bsn = b.getSymbolicName();
+			if (bsn != null && bsn.startsWith(PROBE_PREFIX))
+				continue;
+			final long[] times = bundles.getOrDefault(b.getBundleId(), new long[] { -1, -1, -1, -1, 0 });
+			final BundleStartLevel sl = b.adapt(BundleStartLevel.class);
+			lines.add("bundle\t" + b.getBundleId() + "\t" + bsn + "\t" + b.getVersion() + "\t" + (sl == null ? 0 : sl.getStartLevel()) 
+					+ "\t" + (b.getBundleId() == 0 ? -1 : b.getLastModified()) + "\t" + times[RESOLVED] + "\t" + times[STARTING] 
+					+ "\t" + times[STARTED] + "\t" + times[FIRST_SERVICE] + "\t" + times[SERVICES]);
+		}
+		final Path file = this.file;
+		// the listeners may be called with less privileged bundles on the stack
+		AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+			try {
+				Files.createDirectories(file.toAbsolutePath().getParent());
+				Files.write(file, lines, StandardCharsets.UTF_8);
+			} catch (IOException | SecurityException e) {
+				System.err.println("Failed to write startup timings to " + file + ": " + e);
+			}
+			return null;
+		});
+	}
+
+}
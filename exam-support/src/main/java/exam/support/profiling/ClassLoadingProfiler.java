@@ -0,0 +1,282 @@
+package exam.support.profiling;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.hooks.weaving.WeavingHook;
+import org.osgi.framework.hooks.weaving.WovenClass;
+import org.osgi.framework.hooks.weaving.WovenClassListener;
+
+/**
+ * Records the class loading and bundle activation inside the container and writes the results
+ * whenever a probe is uninstalled and when the framework stops, to the files given by the framework property {@value #FILE_PROPERTY}
+ * plus a suffix:
+ * <ul>
+ *   <li><code>.folded</code>: one line per call stack and its self time in microseconds, in the collapsed
+ *   	stack format of flame graph tools. The root frame is the thread, the other frames are either
+ *   	<code>activate:&lt;bundle&gt;</code> for a bundle activation or <code>load:&lt;bundle&gt;</code> for the classes
+ *   	defined by a bundle class loader; nested loads from the same bundle are merged into one frame.
+ *   <li><code>.csv</code>: one line per bundle, with the classes loaded until the probe was installed
+ *   	and afterwards, the time spent defining them, the activation time and the activation policy.
+ *   	The column candidate marks bundles from which no class was loaded at all (drop) and bundles
+ *   	with an activator from which no class was loaded once the tests started (lazy).
+ * </ul>
+ * Class loading is measured from the weaving hook, which is called after the class bytes have been
+ * read, until the class is defined, including the loading of its super types. Only classes defined
+ * after the activation of this bundle are seen.<br>
+ * Packaged into a bundle of its own, see {@link exam.support.SupportBundles}, so that it does not depend
+ * on the bundles it measures.
+ */
+public class ClassLoadingProfiler implements BundleActivator, WeavingHook, WovenClassListener, SynchronousBundleListener {
+
+	public static final String FILE_PROPERTY = "exam.support.classloading.file";
+	private static final String PROBE_PREFIX = "PAXEXAM-PROBE";
+
+	private final Map<Long, Stats> bundles = new ConcurrentHashMap<>();
+	// collapsed stack -> self time in nanos
+	private final Map<String, long[]> stacks = new ConcurrentHashMap<>();
+	private final ThreadLocal<Deque<Frame>> threadStacks = ThreadLocal.withInitial(ArrayDeque::new);
+	private volatile BundleContext ctx;
+	private volatile Path file;
+	private volatile boolean recording;
+	private volatile boolean probeInstalled;
+	private ServiceRegistration<?> registration;
+
+	@Override
+	public void start(BundleContext ctx) throws Exception {
+		final String file = ctx.getProperty(FILE_PROPERTY);
+		if (file == null)
+			return;
+		this.ctx = ctx;
+		this.file = Paths.get(file);
+		// the hook must not trigger the loading of its own classes
+		threadStacks.get();
+		new Frame("", "", ctx.getBundle(), null, 0).self();
+		stats(ctx.getBundle());
+		this.recording = true;
+		ctx.addBundleListener(this);
+		registration = ctx.registerService(new String[] { WeavingHook.class.getName(), WovenClassListener.class.getName() }, this, null);
+	}
+
+	@Override
+	public void stop(BundleContext ctx) throws Exception {
+		if (!recording)
+			return;
+		recording = false;
+		if (registration != null) {
+			registration.unregister();
+			registration = null;
+		}
+		write();
+		this.ctx = null;
+	}
+
+	@Override
+	public void weave(WovenClass wovenClass) {
+		final BundleContext ctx = this.ctx;
+		if (!recording || ctx == null)
+			return;
+		try {
+			final Bundle bundle = wovenClass.getBundleWiring().getBundle();
+			if (bundle.equals(ctx.getBundle()))
+				return;
+			push("load:" + bundle.getSymbolicName(), bundle, wovenClass.getClassName());
+		} catch (RuntimeException e) {
+			// a failing weaving hook would be blacklisted by the framework
+		}
+	}
+
+	@Override
+	public void modified(WovenClass wovenClass) {
+		if (!recording)
+			return;
+		final int state = wovenClass.getState();
+		if (state != WovenClass.DEFINED && state != WovenClass.DEFINE_FAILED)
+			return;
+		final Frame frame = pop(wovenClass.getClassName(), null);
+		if (frame == null)
+			return;
+		final Stats stats = stats(frame.bundle);
+		synchronized (stats) {
+			if (probeInstalled)
+				stats.classesAfterProbe++;
+			else
+				stats.classesBeforeProbe++;
+			stats.loadNanos += frame.self();
+		}
+	}
+
+	@Override
+	public void bundleChanged(BundleEvent event) {
+		if (!recording)
+			return;
+		final Bundle bundle = event.getBundle();
+		switch (event.getType()) {
+		case BundleEvent.INSTALLED:
+			final String bsn = bundle.getSymbolicName();
+			if (bsn != null && bsn.startsWith(PROBE_PREFIX))
+				probeInstalled = true;
+			break;
+		case BundleEvent.UNINSTALLED:
+			// the forked container may be killed before the framework stops this bundle
+			final String name = bundle.getSymbolicName();
+			if (name != null && name.startsWith(PROBE_PREFIX))
+				write();
+			break;
+		case BundleEvent.STARTING:
+			push("activate:" + bundle.getSymbolicName(), bundle, null);
+			break;
+		case BundleEvent.STARTED:
+			final Frame frame = pop(null, bundle);
+			if (frame != null) {
+				final Stats stats = stats(bundle);
+				synchronized (stats) {
+					stats.activationNanos += frame.elapsed;
+				}
+			}
+			break;
+		}
+	}
+
+	private void push(String label, Bundle bundle, String className) {
+		final Deque<Frame> stack = threadStacks.get();
+		final Frame parent = stack.peek();
+		// nested loads from the same bundle are shown as one frame
+		final boolean merged = parent != null && parent.label.equals(label);
+		final String path = merged ? parent.path : (parent != null ? parent.path : Thread.currentThread().getName()) + ";" + label;
+		stack.push(new Frame(label, path, bundle, className, System.nanoTime()));
+	}
+
+	// the frame of the class, or of the activation of the bundle if className is null
+	private Frame pop(String className, Bundle bundle) {
+		final Deque<Frame> stack = threadStacks.get();
+		final Iterator<Frame> it = stack.iterator();
+		// a frame may be left over if the framework did not report its end, e.g. a failed activation
+		while (it.hasNext()) {
+			final Frame frame = it.next();
+			if (className == null ? frame.className == null && frame.bundle.equals(bundle) : className.equals(frame.className)) {
+				while (stack.peek() != frame) {
+					stack.pop();
+				}
+				stack.pop();
+				frame.elapsed = System.nanoTime() - frame.start;
+				final long[] self = stacks.computeIfAbsent(frame.path, p -> new long[1]);
+				synchronized (self) {
+					self[0] += frame.self();
+				}
+				final Frame parent = stack.peek();
+				if (parent != null)
+					parent.children += frame.elapsed;
+				return frame;
+			}
+		}
+		return null;
+	}
+
+	private Stats stats(Bundle bundle) {
+		return bundles.computeIfAbsent(bundle.getBundleId(), id -> new Stats());
+	}
+
+	private synchronized void write() {
+		final BundleContext ctx = this.ctx;
+		final Path file = this.file;
+		if (ctx == null || file == null)
+			return;
+		final List<String> folded = new ArrayList<>();
+		for (Map.Entry<String, long[]> entry : new TreeMap<>(stacks).entrySet()) {
+			final long micros;
+			synchronized (entry.getValue()) {
+				micros = entry.getValue()[0] / 1000;
+			}
+			if (micros > 0)
+				folded.add(entry.getKey() + " " + micros);
+		}
+		final List<String> csv = new ArrayList<>();
+		csv.add("id,bundle,version,classesBeforeProbe,classesAfterProbe,classLoadMs,activationMs,lazy,hasActivator,candidate");
+		for (Bundle b : ctx.getBundles()) {
+			final String bsn = b.getSymbolicName();
+			if (bsn != null && bsn.startsWith(PROBE_PREFIX))
+				continue;
+			final Stats stats = bundles.getOrDefault(b.getBundleId(), new Stats());
+			final String policy = b.getHeaders("").get(Constants.BUNDLE_ACTIVATIONPOLICY);
+			final boolean lazy = policy != null && policy.startsWith(Constants.ACTIVATION_LAZY);
+			final boolean activator = b.getHeaders("").get(Constants.BUNDLE_ACTIVATOR) != null;
+			final boolean fragment = b.getHeaders("").get(Constants.FRAGMENT_HOST) != null;
+			synchronized (stats) {
+				// heuristic: nothing loaded at all -> dropping it may be possible; activated eagerly but
+				// not needed by the tests -> lazy activation may help
+				final String candidate = b.getBundleId() == 0 || fragment || b.equals(ctx.getBundle()) ? ""
+						: stats.classesBeforeProbe + stats.classesAfterProbe == 0 && !activator ? "drop"
+						: !lazy && activator && stats.classesAfterProbe == 0 ? "lazy" : "";
+				csv.add(b.getBundleId() + "," + bsn + "," + b.getVersion() + "," + stats.classesBeforeProbe + "," + stats.classesAfterProbe + ","
+						+ stats.loadNanos / 1_000_000 + "," + stats.activationNanos / 1_000_000 + "," + lazy + "," + activator + "," + candidate);
+			}
+		}
+		// the framework may stop this bundle with less privileged bundles on the stack
+		AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+			try {
+				Files.createDirectories(file.toAbsolutePath().getParent());
+				Files.write(Paths.get(file + ".folded"), folded, StandardCharsets.UTF_8);
+				Files.write(Paths.get(file + ".csv"), csv, StandardCharsets.UTF_8);
+			} catch (IOException | SecurityException e) {
+				System.err.println("Failed to write class loading profile to " + file + ": " + e);
+			}
+			return null;
+		});
+	}
+
+	private static final class Frame {
+
+		final String label;
+		// collapsed stack of this frame
+		final String path;
+		final Bundle bundle;
+		final String className;
+		final long start;
+		long elapsed;
+		long children;
+
+		Frame(String label, String path, Bundle bundle, String className, long start) {
+			this.label = label;
+			this.path = path;
+			this.bundle = bundle;
+			this.className = className;
+			this.start = start;
+		}
+
+		long self() {
+			return Math.max(0, elapsed - children);
+		}
+
+	}
+
+	private static final class Stats {
+
+		int classesBeforeProbe;
+		int classesAfterProbe;
+		long loadNanos;
+		long activationNanos;
+
+	}
+
+}
@@ -3,7 +3,6 @@ package exam.tests;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -13,6 +12,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.ops4j.pax.exam.Configuration;
 import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamFactory;
 import org.ops4j.pax.exam.Option;
 import org.ops4j.pax.exam.junit.PaxExam;
 import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
@@ -25,35 +25,32 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.wiring.FrameworkWiring;
 import org.junit.Assert;
 
+import exam.support.ForkDirectories;
+import exam.support.JavaVersion;
+import exam.support.WarmTestContainerFactory;
+
 /**
  * @author cnoelle
  */
 @RunWith(PaxExam.class)
 @ExamReactorStrategy(PerClass.class)
+@ExamFactory(WarmTestContainerFactory.class)
 public class FelixForkedTest {
 
-	private static final Path osgiStorage = Paths.get("data/osgi-storage");
 	private static final AtomicInteger bundleCount = new AtomicInteger(0);
 	
 	@Inject
 	protected BundleContext ctx;
 	
-	private static int getJavaVersion() {
-		String version = System.getProperty("java.specification.version");
-		final int idx = version.indexOf('.');
-		if (idx > 0)
-			version = version.substring(idx + 1);
-		return Integer.parseInt(version); 
-	}
-
 	@Configuration
 	public Option[] configuration() throws IOException {
+		final Path osgiStorage = ForkDirectories.dataDirectory().resolve("osgi-storage");
 		return new Option[] {
 				CoreOptions.cleanCaches(),
 				CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE).value(osgiStorage.toString()), 
 				CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE_CLEAN).value(Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT),
 				CoreOptions.vmOption("-ea"), 
-				CoreOptions.when(getJavaVersion() >= 9).useOptions(
+				CoreOptions.when(JavaVersion.get() >= 9).useOptions(
 					CoreOptions.vmOption("--add-opens=java.base/jdk.internal.loader=ALL-UNNAMED")
 				),				
 				CoreOptions.junitBundles(),
@@ -0,0 +1,41 @@
+package exam.tests;
+
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Activator of the synthetic bundles generated by {@link ParallelActivationBenchmark}; spends the
+ * configured time computing and then waiting, like an activator that initializes a library and
+ * reads its configuration. Both durations are framework or system properties, in microseconds. It only
+ * depends on the OSGi core API, since every synthetic bundle contains its own copy.
+ */
+public class ActivationCost implements BundleActivator {
+
+	public static final String CPU_PROPERTY = "exam.benchmark.activation.cpu";
+	public static final String WAIT_PROPERTY = "exam.benchmark.activation.wait";
+	static final long DEFAULT_CPU_MICROS = 2000;
+	static final long DEFAULT_WAIT_MICROS = 3000;
+	private static volatile long sink;
+
+	@Override
+	public void start(BundleContext ctx) throws Exception {
+		final long end = System.nanoTime() + micros(ctx, CPU_PROPERTY, DEFAULT_CPU_MICROS) * 1000;
+		long sum = 0;
+		while (System.nanoTime() < end) {
+			sum += Long.numberOfTrailingZeros(sum ^ end);
+		}
+		sink = sum;
+		final long waitMicros = micros(ctx, WAIT_PROPERTY, DEFAULT_WAIT_MICROS);
+		Thread.sleep(waitMicros / 1000, (int) (waitMicros % 1000) * 1000);
+	}
+
+	static long micros(BundleContext ctx, String property, long defaultValue) {
+		final String value = ctx.getProperty(property);
+		return value == null ? defaultValue : Long.parseLong(value.trim());
+	}
+
+	@Override
+	public void stop(BundleContext ctx) throws Exception {
+	}
+
+}
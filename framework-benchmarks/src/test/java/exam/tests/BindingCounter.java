@@ -0,0 +1,28 @@
+package exam.tests;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Declarative services component of the bundle generated by {@link ServiceRegistryBenchmark};
+ * counts the services bound to its dynamic multiple reference. It only depends on JDK types,
+ * so that the probe can access the component service.
+ */
+public class BindingCounter implements IntSupplier {
+
+	private final AtomicInteger count = new AtomicInteger(0);
+
+	protected void bind(Runnable service) {
+		count.incrementAndGet();
+	}
+
+	protected void unbind(Runnable service) {
+		count.decrementAndGet();
+	}
+
+	@Override
+	public int getAsInt() {
+		return count.get();
+	}
+
+}
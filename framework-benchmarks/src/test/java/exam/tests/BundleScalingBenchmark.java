@@ -0,0 +1,87 @@
+package exam.tests;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+
+/**
+ * Install, resolve, start, refresh and uninstall times for graphs of synthetic bundles, see
+ * {@link SyntheticBundles}. Every phase is measured once per graph size, for all bundles together;
+ * the results contain the time per bundle as an additional metric, which reveals nonlinear growth.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #SIZES_PROPERTY}: comma-separated numbers of bundles, default 10,100,1000; larger graphs such as
+ * 		5000 bundles take many minutes per framework, since the resolve time grows much faster than linearly
+ * </ul>
+ */
+public class BundleScalingBenchmark extends FrameworkBenchmarkBase {
+
+	public static final String SIZES_PROPERTY = "exam.benchmark.bundles.sizes";
+	private static final long SEED = 42;
+
+	@Test
+	public void bundleScaling() throws Exception {
+		final BenchmarkReport report = new BenchmarkReport("bundle-scaling-" + getFramework(), ctx);
+		for (int size : Benchmark.sizes(SIZES_PROPERTY, 10, 100, 1000)) {
+			run(report, SyntheticBundles.generate("exam.synthetic.n" + size, size, SEED));
+		}
+		report.write();
+	}
+
+	private void run(BenchmarkReport report, SyntheticBundles graph) throws Exception {
+		final int size = graph.jars.size();
+		final Map<String, Object> params = new LinkedHashMap<>();
+		params.put("bundles", size);
+		params.put("fragments", graph.fragments);
+		final List<Bundle> bundles = new ArrayList<>(size);
+		try {
+			add(report, size, Benchmark.once("install", params, () -> {
+				for (int i = 0; i < size; i++) {
+					bundles.add(ctx.installBundle("synthetic:" + SyntheticBundles.symbolicName(graph.prefix, i),
+							new ByteArrayInputStream(graph.jars.get(i))));
+				}
+			}));
+			add(report, size, Benchmark.once("resolve", params, () ->
+				Assert.assertTrue("Synthetic bundles could not be resolved", wiring().resolveBundles(bundles))
+			));
+			add(report, size, Benchmark.once("start", params, () -> {
+				for (int i = 0; i < size; i++) {
+					if (!SyntheticBundles.isFragment(i))
+						bundles.get(i).start();
+				}
+			}));
+			add(report, size, Benchmark.once("refresh", params, () -> refresh(bundles)));
+			// in reverse order, so that no bundle is uninstalled while others still import from it
+			add(report, size, Benchmark.once("uninstall", params, () -> {
+				for (int i = size - 1; i >= 0; i--) {
+					bundles.get(i).uninstall();
+				}
+				refresh(null);
+			}));
+			bundles.clear();
+		} finally {
+			for (Bundle bundle : bundles) {
+				if (bundle.getState() != Bundle.UNINSTALLED)
+					bundle.uninstall();
+			}
+			if (!bundles.isEmpty())
+				refresh(null);
+		}
+	}
+
+	private static void add(BenchmarkReport report, int size, BenchmarkResult result) {
+		report.add(result.metric("microsPerBundle", result.getNanosPerOp() / size / 1000));
+	}
+
+}
@@ -0,0 +1,107 @@
+package exam.tests;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.Configuration;
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+import exam.support.BenchmarkOptions;
+import exam.support.ForkDirectories;
+import exam.support.JavaVersion;
+import exam.support.WarmTestContainerFactory;
+
+/**
+ * Forked container with the same bundles as FelixForkedTest and EquinoxForkedTest. The framework
+ * implementation is determined by the test classpath, see the pom: the surefire execution
+ * <code>default-test</code> runs on Felix, <code>equinox-test</code> on Equinox. The executions
+ * <code>felix-secure-test</code> and <code>equinox-secure-test</code> set the system property
+ * {@value BenchmarkOptions#SECURE_PROPERTY}, which enables the security manager and OSGi security.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+@ExamFactory(WarmTestContainerFactory.class)
+public abstract class FrameworkBenchmarkBase {
+
+	public static final String FRAMEWORK_PROPERTY = "exam.benchmark.framework";
+	protected static final long TIMEOUT_SECONDS = 300;
+
+	@Inject
+	protected BundleContext ctx;
+
+	/**
+	 * @return
+	 * 		true if the benchmarks run with security enabled
+	 */
+	protected static boolean isSecure() {
+		return Boolean.getBoolean(BenchmarkOptions.SECURE_PROPERTY);
+	}
+
+	@Configuration
+	public Option[] configuration() throws IOException {
+		final Path osgiStorage = ForkDirectories.dataDirectory().resolve("osgi-storage");
+		return new Option[] {
+				CoreOptions.cleanCaches(),
+				CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE).value(osgiStorage.toString()),
+				CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE_CLEAN).value(Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT),
+				CoreOptions.vmOption("-ea"),
+				// Equinox implements OSGi security itself, Felix requires an extension bundle
+				BenchmarkOptions.securityOptions(CoreOptions.when("felix".equals(getFramework())).useOptions(
+						CoreOptions.mavenBundle("org.apache.felix", "org.apache.felix.framework.security", "2.6.1")
+				)),
+				// required by Felix to attach framework extensions
+				CoreOptions.when(JavaVersion.get() >= 9).useOptions(
+					CoreOptions.vmOption("--add-opens=java.base/jdk.internal.loader=ALL-UNNAMED")
+				),
+				CoreOptions.junitBundles(),
+				CoreOptions.mavenBundle("org.apache.felix", "org.apache.felix.scr", "2.1.2"),
+				CoreOptions.mavenBundle("org.apache.felix", "org.apache.felix.configadmin", "1.9.4"),
+				CoreOptions.mavenBundle("org.ops4j.pax.tinybundles", "tinybundles", "3.0.0"),
+				CoreOptions.mavenBundle("biz.aQute.bnd", "biz.aQute.bndlib", "3.5.0"),
+				BenchmarkOptions.benchmarkSupport()
+			};
+	}
+
+	/**
+	 * @return
+	 * 		felix or equinox, as set by the surefire execution
+	 */
+	protected static String getFramework() {
+		return System.getProperty(FRAMEWORK_PROPERTY, "felix");
+	}
+
+	protected FrameworkWiring wiring() {
+		return ctx.getBundle(Constants.SYSTEM_BUNDLE_ID).adapt(FrameworkWiring.class);
+	}
+
+	/**
+	 * Refresh the bundles, or all bundles pending removal if null is passed, and wait until the
+	 * framework has finished.
+	 */
+	protected void refresh(Collection<Bundle> bundles) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		wiring().refreshBundles(bundles, event -> {
+			if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED)
+				latch.countDown();
+		});
+		Assert.assertTrue("Refresh did not finish in time", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+	}
+
+}
@@ -0,0 +1,282 @@
+package exam.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.tinybundles.core.TinyBundles;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkComparison;
+import exam.support.bench.BenchmarkReport;
+
+/**
+ * Identical workloads for Felix and Equinox; both surefire executions of this module run
+ * this class, and the second one writes the comparison <code>target/benchmarks/felix-vs-equinox.csv</code>
+ * (see {@link BenchmarkComparison}). The workloads:
+ * <ul>
+ * 	<li>startup: init, start and stop of a nested framework, empty and with {@value #STARTUP_BUNDLES}
+ * 		synthetic bundles to install, resolve and start
+ * 	<li>service registry: registration and unregistration with filtered service listeners, and filtered lookups
+ * 	<li>bundle lifecycle: install, start, stop and uninstall of a bundle
+ * 	<li>class loading: the first load of a class from a new bundle class loader, and repeated loads
+ * 		of an imported class, which go through the wiring
+ * 	<li>framework extensions: installation and resolution of a fragment of the system bundle
+ * </ul>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #SERVICES_PROPERTY}: number of services registered per iteration, default 1000
+ * 	<li>{@value #LISTENERS_PROPERTY}: number of filtered service listeners, default 100
+ * </ul>
+ */
+public class FrameworkComparisonBenchmark extends FrameworkBenchmarkBase {
+
+	public static final String SERVICES_PROPERTY = "exam.benchmark.comparison.services";
+	public static final String LISTENERS_PROPERTY = "exam.benchmark.comparison.listeners";
+	private static final String SUITE_PREFIX = "framework-";
+	private static final String SERVICE_GROUP = "exam.benchmark.group";
+	private static final int GROUPS = 10;
+	private static final int STARTUP_BUNDLES = 100;
+	private static final int LIFECYCLE_BATCH = 20;
+	private static final int CLASS_LOADERS = 50;
+	private static final int EXTENSIONS_BATCH = 5;
+	private static final AtomicInteger bundleCount = new AtomicInteger(0);
+
+	@Test
+	public void compareFrameworks() throws Exception {
+		final String suite = SUITE_PREFIX + getFramework();
+		final BenchmarkReport report = new BenchmarkReport(suite, ctx);
+		startup(report);
+		serviceRegistry(report);
+		bundleLifecycle(report);
+		classLoading(report);
+		frameworkExtensions(report);
+		report.write();
+		BenchmarkComparison.compare(SUITE_PREFIX + "felix", SUITE_PREFIX + "equinox", "felix-vs-equinox");
+	}
+
+	private void startup(BenchmarkReport report) throws Exception {
+		final FrameworkFactory factory = frameworkFactory();
+		// in the data area of the probe, since the container cannot access the exam.support classes
+		final Path storage = ctx.getDataFile("nested-storage").toPath().toAbsolutePath();
+		final SyntheticBundles graph = SyntheticBundles.generate("exam.synthetic.startup", STARTUP_BUNDLES, 42);
+		report.add(Benchmark.named("startup")
+			.param("bundles", 0)
+			.batchSize(1)
+			.run(i -> startAndStop(factory, storage, null)));
+		report.add(Benchmark.named("startup")
+			.param("bundles", STARTUP_BUNDLES)
+			.batchSize(1)
+			.run(i -> startAndStop(factory, storage, graph)));
+	}
+
+	// the factory of the framework on the classpath of the forked JVM, i.e. of the same implementation as the container
+	private static FrameworkFactory frameworkFactory() {
+		final Iterator<FrameworkFactory> it = ServiceLoader.load(FrameworkFactory.class, ClassLoader.getSystemClassLoader()).iterator();
+		Assert.assertTrue("No framework factory found on the system class path", it.hasNext());
+		return it.next();
+	}
+
+	private static void startAndStop(FrameworkFactory factory, Path storage, SyntheticBundles graph) throws Exception {
+		final Map<String, String> config = new HashMap<>();
+		config.put(Constants.FRAMEWORK_STORAGE, storage.toString());
+		config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+		// the nested framework must not take over the URL handlers and system properties of the container
+		config.put("felix.service.urlhandlers", "false");
+		config.put("osgi.framework.useSystemProperties", "false");
+		final Framework framework = factory.newFramework(config);
+		framework.init();
+		try {
+			framework.start();
+			if (graph != null) {
+				final List<Bundle> bundles = new ArrayList<>(graph.jars.size());
+				for (int i = 0; i < graph.jars.size(); i++) {
+					bundles.add(framework.getBundleContext().installBundle("synthetic:" + i, new ByteArrayInputStream(graph.jars.get(i))));
+				}
+				for (int i = 0; i < bundles.size(); i++) {
+					if (!SyntheticBundles.isFragment(i))
+						bundles.get(i).start();
+				}
+			}
+		} finally {
+			framework.stop();
+			framework.waitForStop(TIMEOUT_SECONDS * 1000);
+		}
+	}
+
+	private void serviceRegistry(BenchmarkReport report) throws Exception {
+		final int services = Benchmark.sizes(SERVICES_PROPERTY, 1000)[0];
+		final int listenerCount = Benchmark.sizes(LISTENERS_PROPERTY, 100)[0];
+		final AtomicLong events = new AtomicLong();
+		final List<ServiceListener> listeners = new ArrayList<>(listenerCount);
+		final List<ServiceRegistration<Runnable>> registrations = new ArrayList<>(services);
+		try {
+			for (int l = 0; l < listenerCount; l++) {
+				final ServiceListener listener = event -> events.incrementAndGet();
+				ctx.addServiceListener(listener, "(&(" + Constants.OBJECTCLASS + "=" + Runnable.class.getName() + ")("
+						+ SERVICE_GROUP + "=" + (l % GROUPS) + "))");
+				listeners.add(listener);
+			}
+			final Runnable service = () -> {};
+			report.add(Benchmark.named("service-register")
+				.param("services", services)
+				.param("listeners", listenerCount)
+				.batchSize(services)
+				.afterIteration(() -> unregisterAll(registrations))
+				.run(i -> registrations.add(ctx.registerService(Runnable.class, service, serviceProperties(i)))));
+			for (int i = 0; i < services; i++) {
+				registrations.add(ctx.registerService(Runnable.class, service, serviceProperties(i)));
+			}
+			report.add(Benchmark.named("service-modify")
+				.param("services", services)
+				.param("listeners", listenerCount)
+				.batchSize(services)
+				.run(i -> registrations.get(i).setProperties(serviceProperties(i + 1))));
+			report.add(Benchmark.named("service-lookup")
+				.param("services", services)
+				.batchSize(1000)
+				.run(i -> {
+					final ServiceReference<?>[] refs = ctx.getServiceReferences(Runnable.class.getName(), "(" + SERVICE_GROUP + "=" + (i % GROUPS) + ")");
+					Assert.assertNotNull(refs);
+				}));
+			report.add(Benchmark.named("service-unregister")
+				.param("services", services)
+				.param("listeners", listenerCount)
+				.batchSize(services)
+				.beforeIteration(() -> {
+					if (registrations.isEmpty()) {
+						for (int i = 0; i < services; i++) {
+							registrations.add(ctx.registerService(Runnable.class, service, serviceProperties(i)));
+						}
+					}
+				})
+				.afterIteration(registrations::clear)
+				.run(i -> registrations.get(i).unregister()));
+		} finally {
+			unregisterAll(registrations);
+			listeners.forEach(ctx::removeServiceListener);
+		}
+		Assert.assertTrue("Service listeners not called", events.get() > 0);
+	}
+
+	private static Dictionary<String, Object> serviceProperties(int i) {
+		final Dictionary<String, Object> props = new Hashtable<>(4);
+		props.put(SERVICE_GROUP, i % GROUPS);
+		props.put(Constants.SERVICE_RANKING, i);
+		return props;
+	}
+
+	private static void unregisterAll(List<? extends ServiceRegistration<?>> registrations) {
+		for (ServiceRegistration<?> registration : registrations) {
+			try {
+				registration.unregister();
+			} catch (IllegalStateException e) { // already unregistered
+			}
+		}
+		registrations.clear();
+	}
+
+	private void bundleLifecycle(BenchmarkReport report) throws Exception {
+		final byte[] jar = SyntheticBundles.toBytes(TinyBundles.bundle()
+				.set(Constants.BUNDLE_MANIFESTVERSION, "2")
+				.set(Constants.BUNDLE_SYMBOLICNAME, "exam.lifecycle")
+				.set(Constants.BUNDLE_VERSION, "1.0.0")
+				.set(Constants.IMPORT_PACKAGE, "org.osgi.framework")
+				.build());
+		report.add(Benchmark.named("bundle-lifecycle")
+			.batchSize(LIFECYCLE_BATCH)
+			.afterIteration(() -> refresh(null))
+			.run(i -> {
+				final Bundle bundle = ctx.installBundle("lifecycle:" + bundleCount.getAndIncrement(), new ByteArrayInputStream(jar));
+				bundle.start();
+				bundle.stop();
+				bundle.uninstall();
+			}));
+	}
+
+	private void classLoading(BenchmarkReport report) throws Exception {
+		// symbolic names must be unique, hence one jar per bundle; the jars are reused in every iteration
+		final List<byte[]> jars = new ArrayList<>(CLASS_LOADERS + 1);
+		for (int i = 0; i <= CLASS_LOADERS; i++) {
+			jars.add(SyntheticBundles.toBytes(TinyBundles.bundle()
+					.set(Constants.BUNDLE_MANIFESTVERSION, "2")
+					.set(Constants.BUNDLE_SYMBOLICNAME, "exam.classloading" + i)
+					.set(Constants.BUNDLE_VERSION, "1.0.0")
+					.set(Constants.IMPORT_PACKAGE, "org.osgi.framework")
+					.add(TestClass.class)
+					.build()));
+		}
+		final List<Bundle> bundles = new ArrayList<>(CLASS_LOADERS);
+		try {
+			// every bundle has its own class loader, hence the class is defined anew for each of them
+			report.add(Benchmark.named("class-define")
+				.batchSize(CLASS_LOADERS)
+				.beforeIteration(() -> {
+					for (int i = 0; i < CLASS_LOADERS; i++) {
+						final Bundle bundle = ctx.installBundle("classloading:" + bundleCount.getAndIncrement(), new ByteArrayInputStream(jars.get(i)));
+						bundles.add(bundle);
+					}
+					Assert.assertTrue(wiring().resolveBundles(bundles));
+				})
+				.afterIteration(() -> uninstallAll(bundles))
+				.run(i -> bundles.get(i).loadClass(TestClass.class.getName())));
+			final Bundle bundle = ctx.installBundle("classloading:" + bundleCount.getAndIncrement(), new ByteArrayInputStream(jars.get(CLASS_LOADERS)));
+			bundles.add(bundle);
+			report.add(Benchmark.named("class-load-imported")
+				.batchSize(10_000)
+				.run(i -> bundle.loadClass(Bundle.class.getName())));
+		} finally {
+			uninstallAll(bundles);
+		}
+	}
+
+	private void uninstallAll(List<Bundle> bundles) throws BundleException, InterruptedException {
+		for (Bundle bundle : bundles) {
+			bundle.uninstall();
+		}
+		bundles.clear();
+		refresh(null);
+	}
+
+	// framework extensions cannot be detached without a restart, so only a few are installed
+	private void frameworkExtensions(BenchmarkReport report) throws Exception {
+		report.add(Benchmark.named("extension-attach")
+			.batchSize(EXTENSIONS_BATCH)
+			.run(i -> {
+				final String id = "exam.extension" + bundleCount.getAndIncrement();
+				final InputStream in = TinyBundles.bundle()
+						.set(Constants.BUNDLE_SYMBOLICNAME, id)
+						.set(Constants.BUNDLE_VERSION, "0.0.1")
+						.set(Constants.BUNDLE_MANIFESTVERSION, "2")
+						.set(Constants.FRAGMENT_HOST, Constants.SYSTEM_BUNDLE_SYMBOLICNAME
+								+ ";" + Constants.EXTENSION_DIRECTIVE + ":=" + Constants.EXTENSION_FRAMEWORK)
+						.build();
+				final Bundle fragment = ctx.installBundle("test:" + id, in);
+				Assert.assertTrue("Fragment bundle could not be resolved",
+						fragment.getState() == Bundle.RESOLVED || wiring().resolveBundles(Collections.singleton(fragment)));
+				fragment.uninstall();
+			}));
+	}
+
+}
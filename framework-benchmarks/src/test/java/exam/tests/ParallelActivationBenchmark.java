@@ -0,0 +1,109 @@
+package exam.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.exam.Configuration;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.osgi.framework.Bundle;
+
+import exam.support.ParallelActivation;
+import exam.support.activation.ParallelActivator;
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+
+/**
+ * Sequential vs. parallel activation of a graph of synthetic bundles (see {@link SyntheticBundles}),
+ * whose activators spend a fixed time computing and waiting, see {@link ActivationCost}. The sequential
+ * baseline starts the bundles in the order of installation, as a single start level does; the parallel
+ * variants start them with the {@link ParallelActivator}, layer by layer, on the given number of threads.
+ * The results contain the speedup over the baseline as an additional metric.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #BUNDLES_PROPERTY}: number of bundles, default 100
+ * 	<li>{@value #THREADS_PROPERTY}: comma-separated numbers of threads, default 1,2,4,8
+ * 	<li>{@value ActivationCost#CPU_PROPERTY}: computation per activator in microseconds, default 2000
+ * 	<li>{@value ActivationCost#WAIT_PROPERTY}: waiting time per activator in microseconds, default 3000
+ * </ul>
+ */
+public class ParallelActivationBenchmark extends FrameworkBenchmarkBase {
+
+	public static final String BUNDLES_PROPERTY = "exam.benchmark.activation.bundles";
+	public static final String THREADS_PROPERTY = "exam.benchmark.activation.threads";
+	private static final long SEED = 42;
+
+	@Configuration
+	@Override
+	public Option[] configuration() throws IOException {
+		return OptionUtils.combine(super.configuration(), ParallelActivation.activationSupport());
+	}
+
+	@Test
+	public void parallelActivation() throws Exception {
+		final int size = Benchmark.sizes(BUNDLES_PROPERTY, 100)[0];
+		final SyntheticBundles graph = SyntheticBundles.generate("exam.synthetic.activation", size, SEED, ActivationCost.class);
+		final BenchmarkReport report = new BenchmarkReport("parallel-activation-" + getFramework(), ctx)
+				.environment("cpuMicros", ActivationCost.micros(ctx, ActivationCost.CPU_PROPERTY, ActivationCost.DEFAULT_CPU_MICROS))
+				.environment("waitMicros", ActivationCost.micros(ctx, ActivationCost.WAIT_PROPERTY, ActivationCost.DEFAULT_WAIT_MICROS));
+		final List<Bundle> bundles = new ArrayList<>(size);
+		try {
+			for (int i = 0; i < size; i++) {
+				bundles.add(ctx.installBundle("synthetic:" + SyntheticBundles.symbolicName(graph.prefix, i),
+						new ByteArrayInputStream(graph.jars.get(i))));
+			}
+			final List<List<Bundle>> layers = ParallelActivator.plan(ctx, bundles);
+			final int started = layers.stream().mapToInt(List::size).sum();
+			final BenchmarkResult sequential = report.add(Benchmark.named("activation")
+				.param("bundles", started)
+				.param("layers", layers.size())
+				.param("threads", 0)
+				.batchSize(1)
+				.afterIteration(() -> stopAll(bundles))
+				.run(i -> {
+					for (int b = 0; b < size; b++) {
+						if (!SyntheticBundles.isFragment(b))
+							bundles.get(b).start();
+					}
+				}));
+			sequential.metric("speedup", 1.0);
+			for (int threads : Benchmark.sizes(THREADS_PROPERTY, 1, 2, 4, 8)) {
+				final BenchmarkResult parallel = report.add(Benchmark.named("activation")
+					.param("bundles", started)
+					.param("layers", layers.size())
+					.param("threads", threads)
+					.batchSize(1)
+					.afterIteration(() -> stopAll(bundles))
+					.run(i -> {
+						final Map<Bundle, Throwable> failures = ParallelActivator.start(layers, threads, 0);
+						Assert.assertTrue("Bundles failed to start: " + failures, failures.isEmpty());
+					}));
+				parallel.metric("speedup", sequential.getNanosPerOp() / parallel.getNanosPerOp());
+				System.out.println("   Parallel activation of " + started + " bundles in " + layers.size() + " layers with " + threads
+						+ " threads: speedup " + String.format("%.2f", sequential.getNanosPerOp() / parallel.getNanosPerOp()));
+			}
+			report.write();
+		} finally {
+			for (Bundle bundle : bundles) {
+				bundle.uninstall();
+			}
+			if (!bundles.isEmpty())
+				refresh(null);
+		}
+	}
+
+	private static void stopAll(List<Bundle> bundles) throws Exception {
+		for (int i = bundles.size() - 1; i >= 0; i--) {
+			if (!SyntheticBundles.isFragment(i))
+				bundles.get(i).stop();
+		}
+	}
+
+}
@@ -0,0 +1,324 @@
+package exam.tests;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ops4j.pax.tinybundles.core.TinyBundles;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.util.tracker.ServiceTracker;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkComparison;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+import exam.support.bench.Histogram;
+
+/**
+ * Service registry churn and lookups, run without security and, in the secure surefire executions,
+ * with security:
+ * <ul>
+ * 	<li>registration and unregistration, single-threaded and by several threads at once
+ * 	<li>filtered lookups, by a unique id and by a group of 1% of the services, with {@value #SERVICES_PROPERTY}
+ * 		services registered
+ * 	<li>opening a ServiceTracker on all of them, and registration plus unregistration with the tracker open
+ * 	<li>binding to the dynamic multiple reference of a declarative services component, see {@link BindingCounter}:
+ * 		of a single service, and of all of them when the component is activated
+ * </ul>
+ * Whichever of the two runs last writes the security overhead for the current framework to <code>service-registry-security-&lt;framework&gt;.csv</code>.<br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #SERVICES_PROPERTY}: number of registered services, default 10000
+ * 	<li>{@value #THREADS_PROPERTY}: comma-separated numbers of threads for concurrent registrations, default 1,4,16
+ * </ul>
+ */
+public class ServiceRegistryBenchmark extends FrameworkBenchmarkBase {
+
+	public static final String SERVICES_PROPERTY = "exam.benchmark.registry.services";
+	public static final String THREADS_PROPERTY = "exam.benchmark.registry.threads";
+	private static final String SUITE_PREFIX = "service-registry-";
+	private static final String ID = "exam.benchmark.id";
+	private static final String GROUP = "exam.benchmark.group";
+	private static final String BINDING_TARGET = "exam.benchmark.binding";
+	private static final String COMPONENT_NAME = "exam.binding";
+	private static final int GROUPS = 100;
+	private static final int LOOKUP_FILTERS = 1000;
+	private static final Runnable SERVICE = () -> {};
+
+	@Test
+	public void serviceRegistry() throws Exception {
+		final String suite = SUITE_PREFIX + getFramework();
+		final BenchmarkReport report = new BenchmarkReport(isSecure() ? suite + "-secure" : suite, ctx);
+		final int services = Benchmark.sizes(SERVICES_PROPERTY, 10_000)[0];
+		registration(report, services);
+		for (int threads : Benchmark.sizes(THREADS_PROPERTY, 1, 4, 16)) {
+			report.add(churn(threads, services));
+		}
+		final List<ServiceRegistration<Runnable>> registrations = new ArrayList<>(services);
+		try {
+			for (int i = 0; i < services; i++) {
+				registrations.add(ctx.registerService(Runnable.class, SERVICE, serviceProperties(i)));
+			}
+			lookup(report, services);
+			tracker(report, services);
+			declarativeServices(report, services);
+		} finally {
+			unregisterAll(registrations);
+		}
+		report.write();
+		BenchmarkComparison.compare(suite, suite + "-secure", SUITE_PREFIX + "security-" + getFramework());
+	}
+
+	private void registration(BenchmarkReport report, int services) throws Exception {
+		final List<ServiceRegistration<Runnable>> registrations = new ArrayList<>(services);
+		try {
+			report.add(Benchmark.named("register")
+				.param("services", services)
+				.batchSize(services)
+				.afterIteration(() -> unregisterAll(registrations))
+				.run(i -> registrations.add(ctx.registerService(Runnable.class, SERVICE, serviceProperties(i)))));
+			report.add(Benchmark.named("unregister")
+				.param("services", services)
+				.batchSize(services)
+				.beforeIteration(() -> {
+					for (int i = 0; i < services; i++) {
+						registrations.add(ctx.registerService(Runnable.class, SERVICE, serviceProperties(i)));
+					}
+				})
+				.afterIteration(registrations::clear)
+				.run(i -> registrations.get(i).unregister()));
+		} finally {
+			unregisterAll(registrations);
+		}
+	}
+
+	// every operation is a registration followed by the unregistration of the same service
+	private BenchmarkResult churn(int threads, int operations) throws Exception {
+		final Map<String, Object> params = new LinkedHashMap<>();
+		params.put("threads", threads);
+		// the first round warms up the registry and is discarded
+		churnRound(threads, operations);
+		final Histogram latency = new Histogram();
+		final long nanos = churnRound(threads, operations, latency);
+		final BenchmarkResult result = Benchmark.result("churn", params, operations, nanos, latency)
+			.metric("operationsPerSecond", operations / (nanos / 1e9));
+		System.out.println(String.format("   Register/unregister with %d threads: %.0f operations/s, p99 %d us",
+				threads, operations / (nanos / 1e9), latency.getPercentile(99) / 1000));
+		return result;
+	}
+
+	private long churnRound(int threads, int operations) throws Exception {
+		return churnRound(threads, operations, new Histogram());
+	}
+
+	private long churnRound(int threads, int operations, Histogram latency) throws Exception {
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final ExecutorService exec = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<?>> futures = new ArrayList<>(threads);
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				final int ownOperations = operations / threads + (thread < operations % threads ? 1 : 0);
+				futures.add(exec.submit(() -> {
+					final Histogram own = new Histogram();
+					startGate.await();
+					for (int k = 0; k < ownOperations; k++) {
+						final long start = System.nanoTime();
+						ctx.registerService(Runnable.class, SERVICE, serviceProperties(thread + k * threads)).unregister();
+						own.record(System.nanoTime() - start);
+					}
+					synchronized (latency) {
+						latency.add(own);
+					}
+					return null;
+				}));
+			}
+			final long start = System.nanoTime();
+			startGate.countDown();
+			for (Future<?> future : futures) {
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			}
+			return System.nanoTime() - start;
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	private void lookup(BenchmarkReport report, int services) throws Exception {
+		final String[] byId = new String[LOOKUP_FILTERS];
+		final String[] byGroup = new String[LOOKUP_FILTERS];
+		for (int i = 0; i < LOOKUP_FILTERS; i++) {
+			byId[i] = "(" + ID + "=" + (i * 7919L % services) + ")";
+			byGroup[i] = "(" + GROUP + "=" + (i % GROUPS) + ")";
+		}
+		report.add(Benchmark.named("lookup-id")
+			.param("services", services)
+			.batchSize(LOOKUP_FILTERS)
+			.recordLatency()
+			.run(i -> Assert.assertEquals(1, ctx.getServiceReferences(Runnable.class, byId[i]).size())));
+		report.add(Benchmark.named("lookup-group")
+			.param("services", services)
+			.param("matches", services / GROUPS)
+			.batchSize(LOOKUP_FILTERS / 10)
+			.recordLatency()
+			.run(i -> Assert.assertFalse(ctx.getServiceReferences(Runnable.class, byGroup[i]).isEmpty())));
+		report.add(Benchmark.named("lookup-highest-ranked")
+			.param("services", services)
+			.batchSize(LOOKUP_FILTERS)
+			.recordLatency()
+			.run(i -> Assert.assertNotNull(ctx.getServiceReference(Runnable.class))));
+	}
+
+	private void tracker(BenchmarkReport report, int services) throws Exception {
+		final List<ServiceTracker<Runnable, Runnable>> trackers = new ArrayList<>(1);
+		try {
+			final BenchmarkResult open = Benchmark.named("tracker-open")
+				.param("services", services)
+				.batchSize(1)
+				.afterIteration(() -> closeAll(trackers))
+				.run(i -> {
+					final ServiceTracker<Runnable, Runnable> tracker = new ServiceTracker<>(ctx, Runnable.class, null);
+					trackers.add(tracker);
+					tracker.open();
+					Assert.assertEquals(services, tracker.size());
+				});
+			report.add(open.metric("microsPerService", open.getNanosPerOp() / services / 1000));
+			final ServiceTracker<Runnable, Runnable> tracker = new ServiceTracker<>(ctx, Runnable.class, null);
+			trackers.add(tracker);
+			tracker.open();
+			report.add(Benchmark.named("tracker-churn")
+				.param("services", services)
+				.recordLatency()
+				.run(i -> ctx.registerService(Runnable.class, SERVICE, serviceProperties(services + i)).unregister()));
+		} finally {
+			closeAll(trackers);
+		}
+	}
+
+	/*
+	 * The component binds all services with the target property; they are registered and
+	 * unregistered here, in addition to the services of the other benchmarks
+	 */
+	private void declarativeServices(BenchmarkReport report, int services) throws Exception {
+		final Bundle bundle = ctx.installBundle("scr:" + COMPONENT_NAME, new ByteArrayInputStream(componentBundle()));
+		final List<ServiceRegistration<Runnable>> registrations = new ArrayList<>(services);
+		try {
+			bundle.start();
+			final IntSupplier counter = awaitComponent();
+			report.add(Benchmark.named("scr-bind")
+				.batchSize(1000)
+				.recordLatency()
+				.afterIteration(() -> {
+					unregisterAll(registrations);
+					awaitBound(counter, 0);
+				})
+				.run(i -> {
+					registrations.add(ctx.registerService(Runnable.class, SERVICE, bindingTargetProperties(i)));
+					awaitBound(counter, i + 1);
+				}));
+			bundle.stop();
+			for (int i = 0; i < services; i++) {
+				registrations.add(ctx.registerService(Runnable.class, SERVICE, bindingTargetProperties(i)));
+			}
+			final BenchmarkResult activate = Benchmark.named("scr-activate")
+				.param("services", services)
+				.batchSize(1)
+				.afterIteration(bundle::stop)
+				.run(i -> {
+					bundle.start();
+					awaitBound(awaitComponent(), services);
+				});
+			report.add(activate.metric("microsPerService", activate.getNanosPerOp() / services / 1000));
+		} finally {
+			unregisterAll(registrations);
+			bundle.uninstall();
+			refresh(null);
+		}
+	}
+
+	private static byte[] componentBundle() throws Exception {
+		final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<scr:component xmlns:scr=\"http://www.osgi.org/xmlns/scr/v1.1.0\" name=\"" + COMPONENT_NAME + "\" immediate=\"true\">\n"
+				+ "	<implementation class=\"" + BindingCounter.class.getName() + "\"/>\n"
+				+ "	<service><provide interface=\"" + IntSupplier.class.getName() + "\"/></service>\n"
+				+ "	<reference name=\"targets\" interface=\"" + Runnable.class.getName() + "\" cardinality=\"0..n\" policy=\"dynamic\"\n"
+				+ "		bind=\"bind\" unbind=\"unbind\" target=\"(" + BINDING_TARGET + "=true)\"/>\n"
+				+ "</scr:component>\n";
+		return SyntheticBundles.toBytes(TinyBundles.bundle()
+				.set(Constants.BUNDLE_MANIFESTVERSION, "2")
+				.set(Constants.BUNDLE_SYMBOLICNAME, COMPONENT_NAME)
+				.set(Constants.BUNDLE_VERSION, "1.0.0")
+				.set("Service-Component", "OSGI-INF/component.xml")
+				.add("OSGI-INF/component.xml", new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+				.add(BindingCounter.class)
+				.build());
+	}
+
+	private IntSupplier awaitComponent() throws Exception {
+		final String filter = "(component.name=" + COMPONENT_NAME + ")";
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+		while (System.nanoTime() < deadline) {
+			for (ServiceReference<IntSupplier> ref : ctx.getServiceReferences(IntSupplier.class, filter)) {
+				final IntSupplier counter = ctx.getService(ref);
+				if (counter != null)
+					return counter;
+			}
+			Thread.sleep(1);
+		}
+		throw new AssertionError("Component " + COMPONENT_NAME + " not activated in time");
+	}
+
+	// binding is synchronous for dynamic references in practice, the loop only guards against implementations that differ
+	private static void awaitBound(IntSupplier counter, int expected) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+		while (counter.getAsInt() != expected) {
+			Assert.assertTrue("Services not bound in time: " + counter.getAsInt() + " of " + expected, System.nanoTime() < deadline);
+			Thread.yield();
+		}
+	}
+
+	private static Dictionary<String, Object> serviceProperties(int i) {
+		final Dictionary<String, Object> props = new Hashtable<>(4);
+		props.put(ID, i);
+		props.put(GROUP, i % GROUPS);
+		return props;
+	}
+
+	private static Dictionary<String, Object> bindingTargetProperties(int i) {
+		final Dictionary<String, Object> props = serviceProperties(i);
+		props.put(BINDING_TARGET, true);
+		return props;
+	}
+
+	private static void unregisterAll(List<? extends ServiceRegistration<?>> registrations) {
+		for (ServiceRegistration<?> registration : registrations) {
+			try {
+				registration.unregister();
+			} catch (IllegalStateException e) { // already unregistered
+			}
+		}
+		registrations.clear();
+	}
+
+	private static void closeAll(List<? extends ServiceTracker<?, ?>> trackers) {
+		trackers.forEach(ServiceTracker::close);
+		trackers.clear();
+	}
+
+}
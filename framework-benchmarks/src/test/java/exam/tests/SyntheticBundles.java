@@ -0,0 +1,143 @@
+package exam.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.ops4j.pax.tinybundles.core.TinyBundle;
+import org.ops4j.pax.tinybundles.core.TinyBundles;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.Constants;
+
+/**
+ * Generates a graph of bundles with TinyBundles. Bundle i exports the package <code>p&lt;i&gt;</code>
+ * in version <code>1.&lt;i % 10&gt;</code> and imports up to {@value #MAX_IMPORTS} randomly chosen packages
+ * of lower numbered bundles with the version range <code>[1.0,2)</code>; its export carries a uses
+ * constraint on all of them. Every {@value #FRAGMENT_RATIO}th bundle is a fragment of a lower numbered
+ * host, and every {@value #DUPLICATE_RATIO}th bundle exports the package of its predecessor a second
+ * time, in a different version, so that the resolver has to choose between providers. Optionally,
+ * every bundle except the fragments gets its own copy of an activator class.
+ */
+final class SyntheticBundles {
+
+	static final int MAX_IMPORTS = 8;
+	static final int FRAGMENT_RATIO = 10;
+	static final int DUPLICATE_RATIO = 20;
+
+	final String prefix;
+	final List<byte[]> jars;
+	final int fragments;
+
+	private SyntheticBundles(String prefix, List<byte[]> jars, int fragments) {
+		this.prefix = prefix;
+		this.jars = jars;
+		this.fragments = fragments;
+	}
+
+	/**
+	 * @param prefix
+	 * 		prefix of the symbolic names and package names
+	 * @param count
+	 * 		number of bundles
+	 * @param seed
+	 * 		seed of the random graph
+	 */
+	static SyntheticBundles generate(String prefix, int count, long seed) throws IOException {
+		return generate(prefix, count, seed, null);
+	}
+
+	/**
+	 * @param prefix
+	 * 		prefix of the symbolic names and package names
+	 * @param count
+	 * 		number of bundles
+	 * @param seed
+	 * 		seed of the random graph
+	 * @param activator
+	 * 		an activator class which is added to every bundle except the fragments, may be null
+	 */
+	static SyntheticBundles generate(String prefix, int count, long seed, Class<? extends BundleActivator> activator) throws IOException {
+		final Random random = new Random(seed);
+		final List<byte[]> jars = new ArrayList<>(count);
+		int fragments = 0;
+		for (int i = 0; i < count; i++) {
+			final Set<Integer> imports = new TreeSet<>();
+			final int importCount = Math.min(i, random.nextInt(MAX_IMPORTS + 1));
+			while (imports.size() < importCount) {
+				imports.add(random.nextInt(i));
+			}
+			final StringBuilder importHeader = new StringBuilder();
+			final StringBuilder uses = new StringBuilder();
+			for (int imported : imports) {
+				if (importHeader.length() > 0) {
+					importHeader.append(',');
+					uses.append(',');
+				}
+				importHeader.append(packageName(prefix, imported)).append(";version=\"[1.0,2)\"");
+				uses.append(packageName(prefix, imported));
+			}
+			final StringBuilder exportHeader = new StringBuilder()
+					.append(packageName(prefix, i)).append(";version=\"1.").append(i % 10).append(".0\"");
+			if (uses.length() > 0)
+				exportHeader.append(";uses:=\"").append(uses).append('"');
+			if (i > 0 && i % DUPLICATE_RATIO == DUPLICATE_RATIO - 1)
+				exportHeader.append(',').append(packageName(prefix, i - 1)).append(";version=\"1.9.1\"");
+			final TinyBundle bundle = TinyBundles.bundle()
+					.set(Constants.BUNDLE_MANIFESTVERSION, "2")
+					.set(Constants.BUNDLE_SYMBOLICNAME, symbolicName(prefix, i))
+					.set(Constants.BUNDLE_VERSION, "1.0.0")
+					.set(Constants.BUNDLE_NAME, "synthetic bundle " + i)
+					.set(Constants.EXPORT_PACKAGE, exportHeader.toString());
+			if (activator != null && !isFragment(i)) {
+				bundle.add(activator)
+					.set(Constants.BUNDLE_ACTIVATOR, activator.getName());
+				if (importHeader.length() > 0)
+					importHeader.append(',');
+				importHeader.append("org.osgi.framework");
+			}
+			if (importHeader.length() > 0)
+				bundle.set(Constants.IMPORT_PACKAGE, importHeader.toString());
+			if (isFragment(i)) {
+				// the host must not be a fragment itself
+				int host = random.nextInt(i);
+				while (isFragment(host)) {
+					host--;
+				}
+				bundle.set(Constants.FRAGMENT_HOST, symbolicName(prefix, host) + ";bundle-version=\"[1.0,2)\"");
+				fragments++;
+			}
+			jars.add(toBytes(bundle.build()));
+		}
+		return new SyntheticBundles(prefix, jars, fragments);
+	}
+
+	static String symbolicName(String prefix, int index) {
+		return prefix + ".b" + index;
+	}
+
+	static String packageName(String prefix, int index) {
+		return prefix + ".p" + index;
+	}
+
+	static boolean isFragment(int index) {
+		return index > 0 && index % FRAGMENT_RATIO == FRAGMENT_RATIO - 1;
+	}
+
+	static byte[] toBytes(InputStream in) throws IOException {
+		try (InputStream stream = in) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = stream.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+}
@@ -0,0 +1,5 @@
+package exam.tests;
+
+public class TestClass {
+
+}
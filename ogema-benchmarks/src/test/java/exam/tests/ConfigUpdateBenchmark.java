@@ -0,0 +1,257 @@
+package exam.tests;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ogema.core.administration.FrameworkClock;
+import org.ogema.core.administration.FrameworkClock.ClockChangeListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ManagedService;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+import exam.support.bench.Histogram;
+
+/**
+ * End-to-end latency of configuration updates, from {@link Configuration#update(Dictionary)} until
+ * the {@link ManagedService} callback, and the update throughput with several concurrent updaters.
+ * The updates are spread across many PIDs; every updater thread owns a disjoint subset of them.
+ * Finally, the latency from an update of the OGEMA simulation clock configuration until the
+ * {@link ClockChangeListener} callback is measured.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #PIDS_PROPERTY}: number of PIDs, default 100
+ * 	<li>{@value #UPDATES_PROPERTY}: updates per run, default 10000
+ * 	<li>{@value #UPDATERS_PROPERTY}: comma-separated numbers of concurrent updaters, default 1,4
+ * 	<li>{@value #STRESS_PROPERTY}: if true, the defaults change to 1000 PIDs, 100000 updates and 1,4,16,64 updaters
+ * </ul>
+ */
+public class ConfigUpdateBenchmark extends OgemaBenchmarkBase {
+
+	public static final String PIDS_PROPERTY = "exam.benchmark.config.pids";
+	public static final String UPDATES_PROPERTY = "exam.benchmark.config.updates";
+	public static final String UPDATERS_PROPERTY = "exam.benchmark.config.updaters";
+	public static final String STRESS_PROPERTY = "exam.benchmark.config.stress";
+	private static final String PID_PREFIX = "exam.benchmark.pid.";
+	private static final String SIM_CLOCK_PID = "org.ogema.application.manager.impl.SimulationClock";
+	private static final String SEQUENCE = "sequence";
+	private static final String SENT = "sentNanos";
+	private static final int WARMUP_UPDATES = 1000;
+	private static final int CLOCK_UPDATES = 200;
+	private static final long TIMEOUT_SECONDS = 300;
+
+	@Inject
+	private FrameworkClock clock;
+
+	@Test
+	public void updatePropagation() throws Exception {
+		final boolean stress = Boolean.getBoolean(STRESS_PROPERTY);
+		final int pids = Benchmark.sizes(PIDS_PROPERTY, stress ? 1000 : 100)[0];
+		final int updates = Benchmark.sizes(UPDATES_PROPERTY, stress ? 100_000 : 10_000)[0];
+		final int[] updaters = stress ? Benchmark.sizes(UPDATERS_PROPERTY, 1, 4, 16, 64) : Benchmark.sizes(UPDATERS_PROPERTY, 1, 4);
+		final BenchmarkReport report = new BenchmarkReport(isSecure() ? "config-secure" : "config", ctx)
+				.environment("stress", stress);
+		final ServiceReference<ConfigurationAdmin> ref = ctx.getServiceReference(ConfigurationAdmin.class);
+		final ConfigurationAdmin ca = ctx.getService(ref);
+		final Receiver[] receivers = new Receiver[pids];
+		final Configuration[] configs = new Configuration[pids];
+		try {
+			for (int i = 0; i < pids; i++) {
+				receivers[i] = new Receiver(i);
+				configs[i] = ca.getConfiguration(receivers[i].pid);
+			}
+			propagate(receivers, configs, 1, Math.min(updates, WARMUP_UPDATES));
+			for (int u : updaters) {
+				report.add(propagate(receivers, configs, Math.min(u, pids), updates));
+			}
+			report.add(clockPropagation(ca));
+		} finally {
+			for (int i = 0; i < pids; i++) {
+				if (receivers[i] != null)
+					receivers[i].close();
+				if (configs[i] != null)
+					configs[i].delete();
+			}
+			ctx.ungetService(ref);
+		}
+		report.write();
+	}
+
+	private static BenchmarkResult propagate(Receiver[] receivers, Configuration[] configs, int updaters, int updates) throws Exception {
+		final int pids = receivers.length;
+		final Round round = new Round(pids);
+		for (Receiver receiver : receivers) {
+			receiver.round = round;
+		}
+		final AtomicLong sequence = new AtomicLong();
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final ExecutorService exec = Executors.newFixedThreadPool(updaters);
+		try {
+			final List<Future<?>> futures = new ArrayList<>(updaters);
+			for (int t = 0; t < updaters; t++) {
+				final int thread = t;
+				// updater t owns the PIDs t, t + updaters, t + 2 * updaters, ...
+				final int ownPids = (pids - thread + updaters - 1) / updaters;
+				final int ownUpdates = updates / updaters + (thread < updates % updaters ? 1 : 0);
+				futures.add(exec.submit(() -> {
+					startGate.await();
+					for (int k = 0; k < ownUpdates; k++) {
+						final int pid = thread + updaters * (k % ownPids);
+						final long seq = sequence.incrementAndGet();
+						final Dictionary<String, Object> props = new Hashtable<>(4);
+						props.put(SEQUENCE, seq);
+						props.put(SENT, System.nanoTime());
+						configs[pid].update(props);
+						round.lastSent.set(pid, seq);
+					}
+					return null;
+				}));
+			}
+			final long start = System.nanoTime();
+			startGate.countDown();
+			for (Future<?> future : futures) {
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			}
+			final long updatesDone = System.nanoTime();
+			round.awaitDelivery();
+			final Map<String, Object> params = new LinkedHashMap<>();
+			params.put("pids", pids);
+			params.put("updaters", updaters);
+			return Benchmark.result("update-propagation", params, updates, round.lastDelivery.get() - start, round.latency)
+				.metric("callbacks", round.callbacks.get())
+				.metric("updateCallsMs", (updatesDone - start) / 1_000_000.0);
+		} finally {
+			exec.shutdownNow();
+			for (Receiver receiver : receivers) {
+				receiver.round = null;
+			}
+		}
+	}
+
+	private BenchmarkResult clockPropagation(ConfigurationAdmin ca) throws Exception {
+		// unbound location, so that the configuration is delivered to the app manager bundle
+		final Configuration cfg = ca.getConfiguration(SIM_CLOCK_PID, null);
+		final Dictionary<String, Object> original = cfg.getProperties();
+		final AtomicReference<CountDownLatch> pending = new AtomicReference<>();
+		final AtomicLong changedAt = new AtomicLong();
+		final ClockChangeListener listener = event -> {
+			changedAt.set(System.nanoTime());
+			final CountDownLatch latch = pending.get();
+			if (latch != null)
+				latch.countDown();
+		};
+		final Histogram latency = new Histogram();
+		final float factor = clock.getSimulationFactor();
+		clock.addClockChangeListener(listener);
+		final long start = System.nanoTime();
+		try {
+			for (int i = 0; i < CLOCK_UPDATES; i++) {
+				final CountDownLatch latch = new CountDownLatch(1);
+				pending.set(latch);
+				final Dictionary<String, Object> props = new Hashtable<>(2);
+				props.put("simulationFactor", i % 2 == 0 ? 2 * factor : factor);
+				final long sent = System.nanoTime();
+				cfg.update(props);
+				Assert.assertTrue("Clock change callback pending", latch.await(5, TimeUnit.SECONDS));
+				latency.record(changedAt.get() - sent);
+			}
+		} finally {
+			clock.removeClockChangeListener(listener);
+			if (original != null)
+				cfg.update(original);
+			else
+				cfg.delete();
+		}
+		return Benchmark.result("clock-propagation", null, CLOCK_UPDATES, System.nanoTime() - start, latency);
+	}
+
+	private static final class Round {
+
+		final Histogram latency = new Histogram();
+		final AtomicInteger callbacks = new AtomicInteger();
+		final AtomicLong lastDelivery = new AtomicLong();
+		final AtomicLongArray lastSent;
+		final AtomicLongArray lastReceived;
+
+		Round(int pids) {
+			this.lastSent = new AtomicLongArray(pids);
+			this.lastReceived = new AtomicLongArray(pids);
+		}
+
+		void delivered(int pid, long seq, long sent) {
+			final long now = System.nanoTime();
+			latency.record(now - sent);
+			callbacks.incrementAndGet();
+			lastReceived.set(pid, seq);
+			lastDelivery.accumulateAndGet(now, Math::max);
+		}
+
+		// configuration admin may skip outdated updates, hence only the last update per PID is awaited
+		void awaitDelivery() throws InterruptedException {
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+			for (int pid = 0; pid < lastSent.length(); pid++) {
+				while (lastReceived.get(pid) != lastSent.get(pid)) {
+					Assert.assertTrue("Configuration update not delivered for PID " + PID_PREFIX + pid, System.nanoTime() < deadline);
+					Thread.sleep(1);
+				}
+			}
+		}
+
+	}
+
+	private final class Receiver implements ManagedService {
+
+		final String pid;
+		final int index;
+		final ServiceRegistration<ManagedService> registration;
+		volatile Round round;
+
+		Receiver(int index) {
+			this.index = index;
+			this.pid = PID_PREFIX + index;
+			final Dictionary<String, Object> props = new Hashtable<>(2);
+			props.put(Constants.SERVICE_PID, pid);
+			this.registration = ctx.registerService(ManagedService.class, this, props);
+		}
+
+		@Override
+		public void updated(Dictionary<String, ?> properties) {
+			final Round round = this.round;
+			if (properties == null || round == null || properties.get(SENT) == null)
+				return;
+			round.delivered(index, (Long) properties.get(SEQUENCE), (Long) properties.get(SENT));
+		}
+
+		void close() {
+			try {
+				registration.unregister();
+			} catch (IllegalStateException e) { // already unregistered
+			}
+		}
+
+	}
+
+}
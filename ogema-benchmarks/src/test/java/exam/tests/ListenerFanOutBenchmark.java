@@ -0,0 +1,308 @@
+package exam.tests;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+import org.ogema.core.resourcemanager.ResourceStructureEvent;
+import org.ogema.core.resourcemanager.ResourceStructureEvent.EventType;
+import org.ogema.core.resourcemanager.ResourceStructureListener;
+import org.ogema.core.resourcemanager.ResourceValueListener;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+import exam.support.bench.Histogram;
+
+/**
+ * Fan-out of resource listener callbacks: a tree of FloatResources, each with several value
+ * listeners and structure listeners, is changed by several concurrent writer threads. Every writer
+ * owns a disjoint subset of the resources. For value changes, the written value identifies the
+ * change, so that the dispatch latency from <code>setValue</code> until the callback can be recorded.
+ * Structure changes add and delete a subresource; their latency is measured from the start of the
+ * change.
+ * <br>
+ * Besides the latency histograms, every result contains the number of callbacks expected and received
+ * (the difference are dropped or coalesced events), the maximum queue depth, i.e. the maximum
+ * number of pending callbacks sampled during the run, and for value listeners the number of stale
+ * callbacks, which saw a value the listener had already been called for.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #RESOURCES_PROPERTY}: number of FloatResources, default 1000
+ * 	<li>{@value #LISTENERS_PROPERTY}: comma-separated numbers of listeners of each kind per resource, default 1,5
+ * 	<li>{@value #WRITERS_PROPERTY}: comma-separated numbers of concurrent writers, default 1,4,16
+ * 	<li>{@value #UPDATES_PROPERTY}: value changes per run, default 100000; a tenth of it structure changes
+ * </ul>
+ */
+public class ListenerFanOutBenchmark extends OgemaBenchmarkBase {
+
+	public static final String RESOURCES_PROPERTY = "exam.benchmark.fanout.resources";
+	public static final String LISTENERS_PROPERTY = "exam.benchmark.fanout.listeners";
+	public static final String WRITERS_PROPERTY = "exam.benchmark.fanout.writers";
+	public static final String UPDATES_PROPERTY = "exam.benchmark.fanout.updates";
+	private static final String ROOT = "fanOutRoot";
+	private static final int GROUP_SIZE = 100;
+	// send times kept per resource; if a writer is more changes ahead of the dispatcher, latencies are underestimated
+	private static final int RING = 256;
+	private static final int WARMUP_UPDATES = 10_000;
+	private static final long TIMEOUT_SECONDS = 300;
+	// a run ends when no callback has arrived for this time, even if callbacks are missing
+	private static final long QUIET_SECONDS = 10;
+
+	@Test
+	public void listenerFanOut() throws Exception {
+		final int resources = Benchmark.sizes(RESOURCES_PROPERTY, 1000)[0];
+		final int updates = Benchmark.sizes(UPDATES_PROPERTY, 100_000)[0];
+		final BenchmarkReport report = new BenchmarkReport(isSecure() ? "listener-fanout-secure" : "listener-fanout", ctx)
+				.environment("resources", resources);
+		final StringResource root = appMan.getResourceManagement().createResource(ROOT, StringResource.class);
+		try {
+			final FloatResource[] values = createTree(root, resources);
+			valueFanOut(values, 1, 1, Math.min(updates, WARMUP_UPDATES));
+			for (int listeners : Benchmark.sizes(LISTENERS_PROPERTY, 1, 5)) {
+				for (int writers : Benchmark.sizes(WRITERS_PROPERTY, 1, 4, 16)) {
+					report.add(valueFanOut(values, listeners, writers, updates));
+					report.add(structureFanOut(values, listeners, writers, Math.max(1, updates / 10)));
+				}
+			}
+		} finally {
+			root.delete();
+		}
+		report.write();
+	}
+
+	private static FloatResource[] createTree(StringResource root, int resources) {
+		final FloatResource[] values = new FloatResource[resources];
+		StringResource group = null;
+		for (int i = 0; i < resources; i++) {
+			if (i % GROUP_SIZE == 0)
+				group = root.addDecorator("g" + i / GROUP_SIZE, StringResource.class);
+			values[i] = group.addDecorator("v" + i, FloatResource.class);
+		}
+		root.activate(true);
+		return values;
+	}
+
+	private static BenchmarkResult valueFanOut(FloatResource[] values, int listeners, int writers, int updates) throws Exception {
+		final Round round = new Round(listeners);
+		final AtomicLongArray sent = new AtomicLongArray(values.length * RING);
+		final int[] counters = new int[values.length];
+		final List<ValueProbe> probes = new ArrayList<>(values.length * listeners);
+		for (int i = 0; i < values.length; i++) {
+			for (int l = 0; l < listeners; l++) {
+				final ValueProbe probe = new ValueProbe(i, round, sent);
+				values[i].addValueListener(probe, true);
+				probes.add(probe);
+			}
+		}
+		try {
+			// the written value identifies the change; floats represent integers exactly up to 2^24
+			return run("value-fanout", round, values.length, listeners, writers, updates, resource -> {
+				final int value = ++counters[resource];
+				sent.set(resource * RING + value % RING, System.nanoTime());
+				round.sent(1);
+				values[resource].setValue(value);
+			}).metric("staleCallbacks", round.stale.get());
+		} finally {
+			for (ValueProbe probe : probes) {
+				values[probe.index].removeValueListener(probe);
+			}
+		}
+	}
+
+	private static BenchmarkResult structureFanOut(FloatResource[] values, int listeners, int writers, int changes) throws Exception {
+		final Round round = new Round(listeners);
+		final AtomicLongArray sent = new AtomicLongArray(values.length);
+		final List<StructureProbe> probes = new ArrayList<>(values.length * listeners);
+		for (int i = 0; i < values.length; i++) {
+			for (int l = 0; l < listeners; l++) {
+				final StructureProbe probe = new StructureProbe(i, round, sent);
+				values[i].addStructureListener(probe);
+				probes.add(probe);
+			}
+		}
+		try {
+			// one subresource added and one removed event per change
+			return run("structure-fanout", round, values.length, listeners, writers, changes, resource -> {
+				sent.set(resource, System.nanoTime());
+				round.sent(2);
+				values[resource].addDecorator("s", FloatResource.class).delete();
+			});
+		} finally {
+			for (StructureProbe probe : probes) {
+				values[probe.index].removeStructureListener(probe);
+			}
+		}
+	}
+
+	private static BenchmarkResult run(String name, Round round, int resources, int listeners, int writers, int changes,
+			Change change) throws Exception {
+		final int threads = Math.min(writers, resources);
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final ExecutorService exec = Executors.newFixedThreadPool(threads + 1);
+		try {
+			final List<Future<?>> futures = new ArrayList<>(threads);
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				// writer t owns the resources t, t + threads, t + 2 * threads, ...
+				final int ownResources = (resources - thread + threads - 1) / threads;
+				final int ownChanges = changes / threads + (thread < changes % threads ? 1 : 0);
+				futures.add(exec.submit(() -> {
+					startGate.await();
+					for (int k = 0; k < ownChanges; k++) {
+						change.apply(thread + threads * (k % ownResources));
+					}
+					return null;
+				}));
+			}
+			final Future<?> sampler = exec.submit(() -> {
+				while (!Thread.currentThread().isInterrupted()) {
+					round.maxQueueDepth.accumulateAndGet(round.queueDepth(), Math::max);
+					Thread.sleep(1);
+				}
+				return null;
+			});
+			final long start = System.nanoTime();
+			startGate.countDown();
+			for (Future<?> future : futures) {
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			}
+			final long changesDone = System.nanoTime();
+			round.awaitDelivery();
+			sampler.cancel(true);
+			final long expected = round.expected.get();
+			final long callbacks = round.callbacks.get();
+			System.out.println(String.format("   %s with %d listeners per resource and %d writers: %d of %d callbacks, max queue depth %d",
+					name, listeners, threads, callbacks, expected, round.maxQueueDepth.get()));
+			final Map<String, Object> params = new LinkedHashMap<>();
+			params.put("resources", resources);
+			params.put("listeners", listeners);
+			params.put("writers", threads);
+			return Benchmark.result(name, params, changes, Math.max(round.lastDelivery.get(), changesDone) - start, round.latency)
+				.metric("callbacks", callbacks)
+				.metric("expectedCallbacks", expected)
+				.metric("missedCallbacks", expected - callbacks)
+				.metric("maxQueueDepth", round.maxQueueDepth.get())
+				.metric("changeCallsMs", (changesDone - start) / 1_000_000.0);
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	@FunctionalInterface
+	private interface Change {
+
+		void apply(int resource) throws Exception;
+
+	}
+
+	private static final class Round {
+
+		final int listeners;
+		final Histogram latency = new Histogram();
+		final AtomicLong expected = new AtomicLong();
+		final AtomicLong callbacks = new AtomicLong();
+		final AtomicLong stale = new AtomicLong();
+		final AtomicLong lastDelivery = new AtomicLong();
+		final AtomicLong maxQueueDepth = new AtomicLong();
+
+		Round(int listeners) {
+			this.listeners = listeners;
+		}
+
+		// called before the change, so that the queue depth never becomes negative
+		void sent(int events) {
+			expected.addAndGet(events * listeners);
+		}
+
+		void delivered(long sentNanos) {
+			final long now = System.nanoTime();
+			latency.record(now - sentNanos);
+			callbacks.incrementAndGet();
+			lastDelivery.accumulateAndGet(now, Math::max);
+		}
+
+		long queueDepth() {
+			return expected.get() - callbacks.get();
+		}
+
+		void awaitDelivery() throws InterruptedException {
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+			long previous = -1;
+			long lastProgress = System.nanoTime();
+			while (callbacks.get() < expected.get()) {
+				final long now = System.nanoTime();
+				final long current = callbacks.get();
+				if (current != previous) {
+					previous = current;
+					lastProgress = now;
+				} else if (now - lastProgress > TimeUnit.SECONDS.toNanos(QUIET_SECONDS)) {
+					return;
+				}
+				Assert.assertTrue("Listener callbacks still pending after " + TIMEOUT_SECONDS + "s", now < deadline);
+				Thread.sleep(1);
+			}
+		}
+
+	}
+
+	private static final class ValueProbe implements ResourceValueListener<FloatResource> {
+
+		final int index;
+		final Round round;
+		final AtomicLongArray sent;
+		private volatile int lastSeen;
+
+		ValueProbe(int index, Round round, AtomicLongArray sent) {
+			this.index = index;
+			this.round = round;
+			this.sent = sent;
+		}
+
+		// the value is read at dispatch time, so it may belong to a later change than the one that triggered the callback
+		@Override
+		public void resourceChanged(FloatResource resource) {
+			final int value = (int) resource.getValue();
+			if (value == lastSeen)
+				round.stale.incrementAndGet();
+			lastSeen = value;
+			round.delivered(sent.get(index * RING + value % RING));
+		}
+
+	}
+
+	private static final class StructureProbe implements ResourceStructureListener {
+
+		final int index;
+		final Round round;
+		final AtomicLongArray sent;
+
+		StructureProbe(int index, Round round, AtomicLongArray sent) {
+			this.index = index;
+			this.round = round;
+			this.sent = sent;
+		}
+
+		@Override
+		public void resourceStructureChanged(ResourceStructureEvent event) {
+			final EventType type = event.getType();
+			if (type == EventType.SUBRESOURCE_ADDED || type == EventType.SUBRESOURCE_REMOVED)
+				round.delivered(sent.get(index));
+		}
+
+	}
+
+}
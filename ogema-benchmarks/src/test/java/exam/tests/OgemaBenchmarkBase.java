@@ -0,0 +1,82 @@
+package exam.tests;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.ogema.core.application.ApplicationManager;
+import org.ops4j.pax.exam.Configuration;
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.osgi.framework.BundleContext;
+
+import exam.support.BenchmarkOptions;
+import exam.support.WarmTestContainerFactory;
+import exam.support.ogema.OgemaOptions;
+import exam.support.ogema.lifecycle.AppLifecycle;
+
+/**
+ * Forked OGEMA container with an application registered for each test, like in
+ * FelixOgemaForkedTest and FelixOgemaSecurityForkedTest. With the system property
+ * {@value BenchmarkOptions#SECURE_PROPERTY} set to true, the benchmarks run with the
+ * security manager and OSGi security enabled.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+@ExamFactory(WarmTestContainerFactory.class)
+public abstract class OgemaBenchmarkBase {
+
+	@Inject
+	protected BundleContext ctx;
+
+	private volatile AppLifecycle lifecycle;
+	protected volatile ApplicationManager appMan;
+
+	/**
+	 * @return
+	 * 		true if the benchmarks run with security enabled
+	 */
+	protected static boolean isSecure() {
+		return Boolean.getBoolean(BenchmarkOptions.SECURE_PROPERTY);
+	}
+
+	/**
+	 * @return
+	 * 		options added to the default configuration, e.g. initial configurations
+	 */
+	protected Option[] additionalOptions() {
+		return new Option[0];
+	}
+
+	@Before
+	public void registerApp() throws Exception {
+		this.lifecycle = new AppLifecycle(ctx);
+		this.appMan = lifecycle.startApp();
+	}
+
+	@After
+	public void waitForStop() {
+		final AppLifecycle lifecycle = this.lifecycle;
+		if (lifecycle != null) {
+			this.lifecycle = null;
+			this.appMan = null;
+			lifecycle.close();
+		}
+	}
+
+	@Configuration
+	public Option[] configuration() {
+		return OptionUtils.combine(new Option[] {
+				OgemaOptions.ogemaConfiguration(),
+				BenchmarkOptions.securityOptions(CoreOptions.vmOption("-Dorg.ogema.security=on")),
+				BenchmarkOptions.benchmarkSupport()
+			}, additionalOptions());
+	}
+
+}
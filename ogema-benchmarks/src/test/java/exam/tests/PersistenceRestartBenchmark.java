@@ -0,0 +1,228 @@
+package exam.tests;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.forked.ForkedTestContainerFactory;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerMethod;
+
+import exam.support.ForkDirectories;
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+
+/**
+ * Fills the OGEMA resource database and restarts the framework with the existing database.
+ * Every test method runs in a new forked container (reactor strategy PerMethod), and the
+ * database folder is kept across containers, while the framework storage is cleaned as usual:
+ * <ul>
+ * 	<li><code>a_fill</code> creates the resources, then updates every value once, and reports the
+ * 		bytes written by the JVM (<code>wchar</code> of <code>/proc/self/io</code>, Linux only) per byte
+ * 		of database growth, and the flush latency, i.e. the time from the last write until the last
+ * 		change of the database files
+ * 	<li><code>b_restart</code> reports the JVM uptime until the complete resource tree is available
+ * 		again, and deletes it
+ * </ul>
+ * The activation time of the persistence bundle itself is part of the startup timings.
+ * Run the class on its own, since the restart depends on the fill step:
+ * <code>-Dtest=PersistenceRestartBenchmark</code>.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #RESOURCES_PROPERTY}: number of resources, default 10000
+ * 	<li>{@value #FLUSH_PROPERTY}: period of the timed persistence in milliseconds; by default the OGEMA default applies
+ * </ul>
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+@ExamReactorStrategy(PerMethod.class)
+@ExamFactory(ForkedTestContainerFactory.class)
+public class PersistenceRestartBenchmark extends OgemaBenchmarkBase {
+
+	public static final String RESOURCES_PROPERTY = "exam.benchmark.persistence.resources";
+	public static final String FLUSH_PROPERTY = "exam.benchmark.persistence.flushPeriod";
+	// system properties read by the OGEMA persistence on startup
+	private static final String DB_PATH_PROPERTY = "org.ogema.resourcedb.dbpath";
+	private static final String FLUSH_PERIOD_PROPERTY = "org.ogema.timedpersistence.period";
+	private static final String DB_FOLDER = "resourcedb-benchmark";
+	private static final String ROOT = "persistenceBenchmark";
+	private static final int GROUP_SIZE = 1000;
+	private static final long POLL_MILLIS = 100;
+	private static final long TIMEOUT_SECONDS = 600;
+
+	@Override
+	protected Option[] additionalOptions() {
+		final String flushPeriod = System.getProperty(FLUSH_PROPERTY);
+		return new Option[] {
+				CoreOptions.systemProperty(DB_PATH_PROPERTY).value(ForkDirectories.dataDirectory().resolve(DB_FOLDER).toAbsolutePath() + "/"),
+				CoreOptions.when(flushPeriod != null).useOptions(
+						CoreOptions.systemProperty(FLUSH_PERIOD_PROPERTY).value(flushPeriod)
+				)
+		};
+	}
+
+	// called inside the container, where exam.support is not available
+	private static Path dbFolder() {
+		return Paths.get(System.getProperty(DB_PATH_PROPERTY));
+	}
+
+	@Test
+	public void a_fill() throws Exception {
+		final int resources = Benchmark.sizes(RESOURCES_PROPERTY, 10_000)[0];
+		final BenchmarkReport report = report("persistence-fill");
+		final StringResource leftover = appMan.getResourceAccess().getResource(ROOT);
+		if (leftover != null) {
+			leftover.delete();
+			awaitFlush(System.nanoTime());
+		}
+		final FloatResource[] values = new FloatResource[resources];
+		final Map<String, Object> params = new LinkedHashMap<>();
+		params.put("resources", resources);
+		report.add(measureWrites("create", params, resources, () -> {
+			final StringResource root = appMan.getResourceManagement().createResource(ROOT, StringResource.class);
+			root.setValue(String.valueOf(resources));
+			StringResource group = null;
+			for (int i = 0; i < resources; i++) {
+				if (i % GROUP_SIZE == 0)
+					group = root.addDecorator("g" + i / GROUP_SIZE, StringResource.class);
+				values[i] = group.addDecorator("v" + i, FloatResource.class);
+				values[i].setValue(i);
+			}
+			root.activate(true);
+		}));
+		report.add(measureWrites("update", params, resources, () -> {
+			for (int i = 0; i < resources; i++) {
+				values[i].setValue(-i);
+			}
+		}));
+		report.write();
+	}
+
+	@Test
+	public void b_restart() throws Exception {
+		final long uptimeAtTest = ManagementFactory.getRuntimeMXBean().getUptime();
+		final StringResource root = appMan.getResourceAccess().getResource(ROOT);
+		Assume.assumeTrue("No resource database found, a_fill has to run first", root != null);
+		final int expected = Integer.parseInt(root.getValue());
+		final long start = System.nanoTime();
+		final long deadline = start + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+		int found;
+		while ((found = root.getSubResources(FloatResource.class, true).size()) < expected) {
+			Assert.assertTrue("Only " + found + " of " + expected + " resources available after restart", System.nanoTime() < deadline);
+			Thread.sleep(POLL_MILLIS);
+		}
+		final long available = System.nanoTime();
+		final long uptimeAvailable = ManagementFactory.getRuntimeMXBean().getUptime();
+		System.out.println(String.format("   %d resources available after %d ms JVM uptime", found, uptimeAvailable));
+		final Map<String, Object> params = new LinkedHashMap<>();
+		params.put("resources", expected);
+		final BenchmarkResult result = Benchmark.result("restart", params, expected, available - start, null)
+			.metric("uptimeAtTestMs", uptimeAtTest)
+			.metric("uptimeTreeAvailableMs", uptimeAvailable)
+			.metric("dbBytes", dbBytes());
+		root.delete();
+		awaitFlush(System.nanoTime());
+		final BenchmarkReport report = report("persistence-restart");
+		report.add(result);
+		report.write();
+	}
+
+	private BenchmarkReport report(String suite) {
+		return new BenchmarkReport(suite, ctx)
+				.environment("flushPeriod", System.getProperty(FLUSH_PERIOD_PROPERTY, "default"));
+	}
+
+	private static BenchmarkResult measureWrites(String name, Map<String, Object> params, int resources, Benchmark.Action action) throws Exception {
+		final long dbBefore = dbBytes();
+		final long writtenBefore = writtenBytes();
+		final BenchmarkResult result = Benchmark.once(name, params, action);
+		final long writesDone = System.nanoTime();
+		final long lastChange = awaitFlush(writesDone);
+		final long written = writtenBefore < 0 ? -1 : writtenBytes() - writtenBefore;
+		final long dbGrowth = dbBytes() - dbBefore;
+		System.out.println(String.format("   %s: %d bytes written, database grew by %d bytes, flushed after %d ms",
+				name, written, dbGrowth, TimeUnit.NANOSECONDS.toMillis(lastChange - writesDone)));
+		return result
+			.metric("bytesWritten", written)
+			.metric("dbGrowthBytes", dbGrowth)
+			.metric("bytesWrittenPerResource", written < 0 ? Double.NaN : written / (double) resources)
+			.metric("writeAmplification", written < 0 || dbGrowth <= 0 ? Double.NaN : written / (double) dbGrowth)
+			.metric("flushLatencyMs", (lastChange - writesDone) / 1_000_000.0);
+	}
+
+	/**
+	 * Waits until the database folder has not changed for one flush period plus a second.
+	 * @return
+	 * 		the time of the last observed change, or the passed time if there was none
+	 */
+	private static long awaitFlush(long since) throws Exception {
+		final long quiet = TimeUnit.MILLISECONDS.toNanos(Long.getLong(FLUSH_PERIOD_PROPERTY, 10_000) + 1000);
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+		long previous = dbBytes();
+		long previousModified = lastModified();
+		long lastChange = since;
+		while (System.nanoTime() - lastChange < quiet && System.nanoTime() < deadline) {
+			Thread.sleep(POLL_MILLIS);
+			final long size = dbBytes();
+			final long modified = lastModified();
+			if (size != previous || modified != previousModified) {
+				lastChange = System.nanoTime();
+				previous = size;
+				previousModified = modified;
+			}
+		}
+		return lastChange;
+	}
+
+	private static long dbBytes() throws IOException {
+		final Path folder = dbFolder();
+		if (!Files.exists(folder))
+			return 0;
+		try (Stream<Path> files = Files.walk(folder)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		}
+	}
+
+	private static long lastModified() throws IOException {
+		final Path folder = dbFolder();
+		if (!Files.exists(folder))
+			return 0;
+		try (Stream<Path> files = Files.walk(folder)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().lastModified()).max().orElse(0);
+		}
+	}
+
+	// bytes passed to write calls by this process, including console output, or -1 if not available
+	private static long writtenBytes() {
+		final Path io = Paths.get("/proc/self/io");
+		try {
+			final List<String> lines = Files.readAllLines(io, StandardCharsets.US_ASCII);
+			for (String line : lines) {
+				if (line.startsWith("wchar:"))
+					return Long.parseLong(line.substring("wchar:".length()).trim());
+			}
+		} catch (IOException | RuntimeException e) { // not on Linux
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,89 @@
+package exam.tests;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.ogema.core.model.Resource;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+
+/**
+ * Throughput and allocation of creating, writing, reading and deleting resources, for
+ * growing sizes of the resource tree. The sizes can be set via the system property
+ * {@value #SIZES_PROPERTY}, e.g. <code>-Dexam.benchmark.resources.sizes=1000,10000</code>.
+ */
+public class ResourceBenchmark extends OgemaBenchmarkBase {
+
+	public static final String SIZES_PROPERTY = "exam.benchmark.resources.sizes";
+	// children per intermediate node, so that no node gets an excessive number of subresources
+	private static final int FAN_OUT = 100;
+	private static final int BATCH_SIZE = 1000;
+
+	@Test
+	public void resourceTreeThroughput() throws Exception {
+		final BenchmarkReport report = new BenchmarkReport(isSecure() ? "resources-secure" : "resources", ctx);
+		for (int size : Benchmark.sizes(SIZES_PROPERTY, 1000, 10000, 100000)) {
+			final StringResource root = appMan.getResourceManagement().createResource("benchmarkRoot", StringResource.class);
+			try {
+				runBenchmarks(report, root, size);
+			} finally {
+				root.delete();
+			}
+		}
+		report.write();
+	}
+
+	private void runBenchmarks(BenchmarkReport report, StringResource root, int size) throws Exception {
+		final List<FloatResource> leaves = new ArrayList<>(size);
+		final Map<String, Object> params = new LinkedHashMap<>();
+		params.put("treeSize", size);
+		report.add(Benchmark.once("populate", params, () -> {
+			StringResource node = null;
+			for (int i = 0; i < size; i++) {
+				if (i % FAN_OUT == 0)
+					node = root.addDecorator("n" + (i / FAN_OUT), StringResource.class);
+				leaves.add(node.addDecorator("v" + (i % FAN_OUT), FloatResource.class));
+			}
+		}));
+		final int batch = Math.min(BATCH_SIZE, size);
+		final Resource[] scratch = new Resource[1];
+		final FloatResource[] created = new FloatResource[batch];
+
+		report.add(Benchmark.named("create")
+			.param("treeSize", size)
+			.batchSize(batch)
+			.beforeIteration(() -> scratch[0] = root.addDecorator("scratch", StringResource.class))
+			.afterIteration(() -> scratch[0].delete())
+			.run(i -> scratch[0].addDecorator("c" + i, FloatResource.class)));
+
+		report.add(Benchmark.named("write")
+			.param("treeSize", size)
+			.batchSize(batch)
+			.run(i -> leaves.get((i * 7919) % size).setValue(i)));
+
+		final float[] sum = new float[1];
+		report.add(Benchmark.named("read")
+			.param("treeSize", size)
+			.batchSize(batch)
+			.run(i -> sum[0] += leaves.get((i * 7919) % size).getValue()));
+
+		report.add(Benchmark.named("delete")
+			.param("treeSize", size)
+			.batchSize(batch)
+			.beforeIteration(() -> {
+				scratch[0] = root.addDecorator("scratch", StringResource.class);
+				for (int i = 0; i < batch; i++) {
+					created[i] = scratch[0].addDecorator("c" + i, FloatResource.class);
+				}
+			})
+			.afterIteration(() -> scratch[0].delete())
+			.run(i -> created[i].delete()));
+	}
+
+}
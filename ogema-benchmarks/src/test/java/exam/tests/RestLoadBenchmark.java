@@ -0,0 +1,271 @@
+package exam.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ogema.accesscontrol.AccessManager;
+import org.ogema.accesscontrol.PermissionManager;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.Option;
+import org.osgi.framework.ServiceReference;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+import exam.support.bench.Histogram;
+
+/**
+ * Load test of the OGEMA REST interface, served by the embedded Jetty: several concurrent clients
+ * read (GET) and write (PUT) resources over localhost, once with JSON and once with XML payloads.
+ * JSON is serialized by Jackson, XML by JAXB, i.e. by MOXy on Java 11 and above; the serializer is
+ * part of the result parameters. The clients authenticate as a machine user created for the test.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #PORT_PROPERTY}: HTTP port, default 8181
+ * 	<li>{@value #CLIENTS_PROPERTY}: comma-separated numbers of concurrent clients, default 1,8,32
+ * 	<li>{@value #REQUESTS_PROPERTY}: requests per run, default 10000
+ * 	<li>{@value #RESOURCES_PROPERTY}: number of FloatResources accessed, default 100
+ * </ul>
+ */
+public class RestLoadBenchmark extends OgemaBenchmarkBase {
+
+	public static final String PORT_PROPERTY = "exam.benchmark.rest.port";
+	public static final String CLIENTS_PROPERTY = "exam.benchmark.rest.clients";
+	public static final String REQUESTS_PROPERTY = "exam.benchmark.rest.requests";
+	public static final String RESOURCES_PROPERTY = "exam.benchmark.rest.resources";
+	private static final String HTTP_PORT_PROPERTY = "org.osgi.service.http.port";
+	private static final String JAXB_FACTORY_PROPERTY = "javax.xml.bind.JAXBContextFactory";
+	private static final String ROOT = "restLoadRoot";
+	private static final String USER = "examRestLoad";
+	private static final String PASSWORD = "examRestLoad";
+	private static final int WARMUP_REQUESTS = 1000;
+	private static final long TIMEOUT_SECONDS = 300;
+	private static final String[] FORMATS = { "json", "xml" };
+	private static final Pattern JSON_VALUE = Pattern.compile("\"value\"\\s*:\\s*[-0-9.Ee]+");
+	private static final Pattern XML_VALUE = Pattern.compile("<(\\w+:)?value>[^<]*</(\\w+:)?value>");
+
+	// a fixed port, since a random one would differ between evaluations of the configuration
+	private static String getPort() {
+		return String.valueOf(Benchmark.sizes(PORT_PROPERTY, 8181)[0]);
+	}
+
+	@Override
+	protected Option[] additionalOptions() {
+		return new Option[] {
+				CoreOptions.frameworkProperty(HTTP_PORT_PROPERTY).value(getPort())
+		};
+	}
+
+	@Test
+	public void restLoad() throws Exception {
+		final int resources = Benchmark.sizes(RESOURCES_PROPERTY, 100)[0];
+		final int requests = Benchmark.sizes(REQUESTS_PROPERTY, 10_000)[0];
+		final String xmlSerializer = String.valueOf(System.getProperty(JAXB_FACTORY_PROPERTY)).contains("eclipse.persistence") ? "moxy" : "jaxb-ri";
+		final BenchmarkReport report = new BenchmarkReport("rest", ctx)
+				.environment("resources", resources)
+				.environment("xmlSerializer", xmlSerializer);
+		final ServiceReference<PermissionManager> ref = ctx.getServiceReference(PermissionManager.class);
+		Assert.assertNotNull("PermissionManager service not found", ref);
+		final AccessManager users = ctx.getService(ref).getAccessManager();
+		Assert.assertTrue("REST user could not be created", users.createUser(USER, PASSWORD, false));
+		final StringResource root = appMan.getResourceManagement().createResource(ROOT, StringResource.class);
+		try {
+			for (int i = 0; i < resources; i++) {
+				root.addDecorator("v" + i, FloatResource.class).setValue(i);
+			}
+			root.activate(true);
+			final String base = "http://localhost:" + ctx.getProperty(HTTP_PORT_PROPERTY) + "/rest/resources/" + ROOT + "/v";
+			final String query = "?user=" + URLEncoder.encode(USER, "UTF-8") + "&pw=" + URLEncoder.encode(PASSWORD, "UTF-8");
+			awaitServlet(base + 0 + query);
+			for (String format : FORMATS) {
+				final Client client = new Client(base, query, format);
+				final String[] templates = new String[resources];
+				for (int i = 0; i < resources; i++) {
+					templates[i] = client.get(i);
+				}
+				final String serializer = format.equals("json") ? "jackson" : xmlSerializer;
+				run("get", format, serializer, resources, 1, Math.min(requests, WARMUP_REQUESTS), (r, k) -> client.get(r));
+				for (int clients : Benchmark.sizes(CLIENTS_PROPERTY, 1, 8, 32)) {
+					report.add(run("get", format, serializer, resources, clients, requests, (r, k) -> client.get(r)));
+					report.add(run("put", format, serializer, resources, clients, requests, (r, k) -> client.put(r, withValue(templates[r], format, k))));
+				}
+			}
+		} finally {
+			root.delete();
+			users.removeUser(USER);
+			ctx.ungetService(ref);
+		}
+		report.write();
+	}
+
+	// the servlet is registered asynchronously, once Jetty and the REST bundle are up
+	private static void awaitServlet(String url) throws Exception {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		int status = -1;
+		while (System.nanoTime() < deadline) {
+			try {
+				final HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+				status = conn.getResponseCode();
+				conn.disconnect();
+				if (status == HttpURLConnection.HTTP_OK)
+					return;
+			} catch (IOException e) { // not listening yet
+			}
+			Thread.sleep(100);
+		}
+		Assert.fail("REST interface not available at " + url + ", last status " + status);
+	}
+
+	private static String withValue(String template, String format, int value) {
+		final Matcher matcher = (format.equals("json") ? JSON_VALUE : XML_VALUE).matcher(template);
+		if (!matcher.find())
+			return template;
+		final String replacement = format.equals("json") ? "\"value\":" + value
+				: "<" + nullToEmpty(matcher.group(1)) + "value>" + value + "</" + nullToEmpty(matcher.group(2)) + "value>";
+		return template.substring(0, matcher.start()) + replacement + template.substring(matcher.end());
+	}
+
+	private static String nullToEmpty(String s) {
+		return s == null ? "" : s;
+	}
+
+	private static BenchmarkResult run(String operation, String format, String serializer, int resources, int clients,
+			int requests, Request request) throws Exception {
+		final Histogram latency = new Histogram();
+		final AtomicLong bytes = new AtomicLong();
+		final CountDownLatch startGate = new CountDownLatch(1);
+		final ExecutorService exec = Executors.newFixedThreadPool(clients);
+		try {
+			final List<Future<?>> futures = new ArrayList<>(clients);
+			for (int c = 0; c < clients; c++) {
+				final int client = c;
+				final int ownRequests = requests / clients + (client < requests % clients ? 1 : 0);
+				futures.add(exec.submit(() -> {
+					final Histogram own = new Histogram();
+					long ownBytes = 0;
+					startGate.await();
+					for (int k = 0; k < ownRequests; k++) {
+						final long start = System.nanoTime();
+						ownBytes += request.send((client + k * clients) % resources, k).length();
+						own.record(System.nanoTime() - start);
+					}
+					synchronized (latency) {
+						latency.add(own);
+					}
+					bytes.addAndGet(ownBytes);
+					return null;
+				}));
+			}
+			final long start = System.nanoTime();
+			startGate.countDown();
+			for (Future<?> future : futures) {
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			}
+			final long nanos = System.nanoTime() - start;
+			final Map<String, Object> params = new LinkedHashMap<>();
+			params.put("format", format);
+			params.put("serializer", serializer);
+			params.put("clients", clients);
+			final BenchmarkResult result = Benchmark.result("rest-" + operation, params, requests, nanos, latency)
+				.metric("requestsPerSecond", requests / (nanos / 1e9))
+				.metric("charsPerRequest", bytes.get() / (double) requests);
+			System.out.println(String.format("   %s %s with %d clients: %.0f requests/s, p99 %d us",
+					operation.toUpperCase(), format, clients, requests / (nanos / 1e9), latency.getPercentile(99) / 1000));
+			return result;
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	@FunctionalInterface
+	private interface Request {
+
+		/**
+		 * @param resource
+		 * 		index of the resource
+		 * @param k
+		 * 		number of the request within the client
+		 * @return
+		 * 		the request or response body, depending on the method
+		 */
+		String send(int resource, int k) throws Exception;
+
+	}
+
+	private static final class Client {
+
+		final String base;
+		final String query;
+		final String mediaType;
+
+		Client(String base, String query, String format) {
+			this.base = base;
+			this.query = query;
+			this.mediaType = "application/" + format;
+		}
+
+		String get(int resource) throws IOException {
+			final HttpURLConnection conn = (HttpURLConnection) new URL(base + resource + query).openConnection();
+			conn.setRequestProperty("Accept", mediaType);
+			return readResponse(conn);
+		}
+
+		String put(int resource, String body) throws IOException {
+			final HttpURLConnection conn = (HttpURLConnection) new URL(base + resource + query).openConnection();
+			conn.setRequestMethod("PUT");
+			conn.setDoOutput(true);
+			conn.setRequestProperty("Accept", mediaType);
+			conn.setRequestProperty("Content-Type", mediaType);
+			try (OutputStream out = conn.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+			readResponse(conn);
+			return body;
+		}
+
+		// reads the full body, so that the connection can be reused
+		private static String readResponse(HttpURLConnection conn) throws IOException {
+			final int status = conn.getResponseCode();
+			final InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			if (in != null) {
+				try (InputStream stream = in) {
+					final byte[] buffer = new byte[8192];
+					int read;
+					while ((read = stream.read(buffer)) >= 0) {
+						out.write(buffer, 0, read);
+					}
+				}
+			}
+			final String body = new String(out.toByteArray(), StandardCharsets.UTF_8);
+			if (status >= 300)
+				throw new IOException("HTTP " + status + " for " + conn.getRequestMethod() + " " + conn.getURL() + ": " + body);
+			return body;
+		}
+
+	}
+
+}
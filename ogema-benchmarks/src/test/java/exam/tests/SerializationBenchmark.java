@@ -0,0 +1,248 @@
+package exam.tests;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ogema.core.model.Resource;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+import org.ogema.core.tools.SerializationManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationModule;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+
+/**
+ * Serialization and deserialization of OGEMA resource trees as JSON (Jackson) and XML (JAXB, i.e.
+ * MOXy on Java 11 and above), for trees of 100 to 100k nodes. Two paths are measured:
+ * <ul>
+ * 	<li><code>ogema</code>: the framework's {@link SerializationManager}, as used by the REST interface
+ * 	<li><code>dto</code>: a JAXB annotated mirror of the tree, written by an {@link ObjectMapper} with
+ * 		the JAXB annotations module and by a {@link Marshaller}, which isolates the libraries
+ * </ul>
+ * In addition, the cost of creating a {@link JAXBContext} and an {@link ObjectMapper} is reported,
+ * and the XML serialization of the smallest tree is repeated with a new context per operation,
+ * which shows how much of the cost per request the context creation would take.
+ * Allocated bytes per operation are part of every result, where the JVM supports it.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #NODES_PROPERTY}: comma-separated tree sizes, default 100,1000,10000,100000
+ * </ul>
+ */
+public class SerializationBenchmark extends OgemaBenchmarkBase {
+
+	public static final String NODES_PROPERTY = "exam.benchmark.serialization.nodes";
+	private static final String JAXB_FACTORY_PROPERTY = "javax.xml.bind.JAXBContextFactory";
+	private static final String ROOT = "serializationRoot";
+	private static final int FAN_OUT = 10;
+	private static final int CONTEXT_CREATIONS = 20;
+	// approximate number of nodes serialized per iteration, which determines the batch size
+	private static final int NODES_PER_ITERATION = 100_000;
+
+	@Test
+	public void serialization() throws Exception {
+		final String xmlSerializer = String.valueOf(System.getProperty(JAXB_FACTORY_PROPERTY)).contains("eclipse.persistence") ? "moxy" : "jaxb-ri";
+		final BenchmarkReport report = new BenchmarkReport(isSecure() ? "serialization-secure" : "serialization", ctx)
+				.environment("xmlSerializer", xmlSerializer);
+		final int[] sizes = Benchmark.sizes(NODES_PROPERTY, 100, 1000, 10_000, 100_000);
+		final JAXBContext context = contextCreation(report, xmlSerializer);
+		for (int nodes : sizes) {
+			final StringResource root = createTree(nodes);
+			try {
+				final Node tree = Node.of(root);
+				runDto(report, tree, nodes, context, xmlSerializer);
+				runOgema(report, root, nodes, xmlSerializer);
+				if (nodes == sizes[0])
+					report.add(uncachedContext(tree, nodes, xmlSerializer));
+			} finally {
+				root.delete();
+			}
+		}
+		report.write();
+	}
+
+	private JAXBContext contextCreation(BenchmarkReport report, String xmlSerializer) throws Exception {
+		final Map<String, Object> params = new LinkedHashMap<>();
+		params.put("serializer", xmlSerializer);
+		final JAXBContext[] context = new JAXBContext[1];
+		report.add(Benchmark.once("jaxb-context-first", params, () -> context[0] = newContext()));
+		report.add(Benchmark.named("jaxb-context")
+			.param("serializer", xmlSerializer)
+			.batchSize(CONTEXT_CREATIONS)
+			.run(i -> newContext()));
+		report.add(Benchmark.named("jackson-mapper")
+			.param("serializer", "jackson")
+			.batchSize(CONTEXT_CREATIONS)
+			.run(i -> newMapper()));
+		return context[0];
+	}
+
+	// the JAXB API finds the configured context factory via the context class loader
+	private static JAXBContext newContext() throws Exception {
+		final Thread thread = Thread.currentThread();
+		final ClassLoader original = thread.getContextClassLoader();
+		thread.setContextClassLoader(SerializationBenchmark.class.getClassLoader());
+		try {
+			return JAXBContext.newInstance(Node.class);
+		} finally {
+			thread.setContextClassLoader(original);
+		}
+	}
+
+	private static ObjectMapper newMapper() {
+		return new ObjectMapper().registerModule(new JaxbAnnotationModule());
+	}
+
+	private static int batchSize(int nodes) {
+		return Math.max(1, Math.min(1000, NODES_PER_ITERATION / nodes));
+	}
+
+	private static void runDto(BenchmarkReport report, Node tree, int nodes, JAXBContext context, String xmlSerializer) throws Exception {
+		final ObjectMapper mapper = newMapper();
+		final Marshaller marshaller = context.createMarshaller();
+		final Unmarshaller unmarshaller = context.createUnmarshaller();
+		final String json = mapper.writeValueAsString(tree);
+		final String xml = toXml(marshaller, tree);
+		Assert.assertEquals("Jackson round trip failed", nodes, mapper.readValue(json, Node.class).count());
+		Assert.assertEquals("JAXB round trip failed", nodes, ((Node) unmarshaller.unmarshal(new StringReader(xml))).count());
+		final int batch = batchSize(nodes);
+		report.add(named("serialize", "dto", "json", "jackson", nodes, batch)
+			.run(i -> mapper.writeValueAsString(tree))
+			.metric("chars", json.length()));
+		report.add(named("deserialize", "dto", "json", "jackson", nodes, batch)
+			.run(i -> mapper.readValue(json, Node.class)));
+		report.add(named("serialize", "dto", "xml", xmlSerializer, nodes, batch)
+			.run(i -> toXml(marshaller, tree))
+			.metric("chars", xml.length()));
+		report.add(named("deserialize", "dto", "xml", xmlSerializer, nodes, batch)
+			.run(i -> unmarshaller.unmarshal(new StringReader(xml))));
+	}
+
+	private void runOgema(BenchmarkReport report, StringResource root, int nodes, String xmlSerializer) throws Exception {
+		final SerializationManager sm = appMan.getSerializationManager();
+		sm.setMaxDepth(Integer.MAX_VALUE);
+		sm.setFollowReferences(false);
+		final String json = sm.toJson(root);
+		final String xml = sm.toXml(root);
+		final int batch = batchSize(nodes);
+		report.add(named("serialize", "ogema", "json", "jackson", nodes, batch)
+			.run(i -> sm.toJson(root))
+			.metric("chars", json.length()));
+		report.add(named("deserialize", "ogema", "json", "jackson", nodes, batch)
+			.run(i -> sm.applyJson(json, root, true)));
+		report.add(named("serialize", "ogema", "xml", xmlSerializer, nodes, batch)
+			.run(i -> sm.toXml(root))
+			.metric("chars", xml.length()));
+		report.add(named("deserialize", "ogema", "xml", xmlSerializer, nodes, batch)
+			.run(i -> sm.applyXml(xml, root, true)));
+	}
+
+	private static BenchmarkResult uncachedContext(Node tree, int nodes, String xmlSerializer) throws Exception {
+		return named("serialize-new-context", "dto", "xml", xmlSerializer, nodes, batchSize(nodes))
+			.run(i -> toXml(newContext().createMarshaller(), tree));
+	}
+
+	private static Benchmark named(String name, String path, String format, String serializer, int nodes, int batch) {
+		return Benchmark.named(name)
+			.param("path", path)
+			.param("format", format)
+			.param("serializer", serializer)
+			.param("nodes", nodes)
+			.batchSize(batch);
+	}
+
+	private static String toXml(Marshaller marshaller, Node tree) throws Exception {
+		final StringWriter writer = new StringWriter();
+		marshaller.marshal(tree, writer);
+		return writer.toString();
+	}
+
+	// a tree with the given number of nodes and fan-out FAN_OUT; inner nodes are StringResources, leaves FloatResources
+	private StringResource createTree(int nodes) {
+		final StringResource root = appMan.getResourceManagement().createResource(ROOT + nodes, StringResource.class);
+		final List<Resource> created = new ArrayList<>(nodes);
+		created.add(root);
+		for (int i = 1; i < nodes; i++) {
+			final Resource parent = created.get((i - 1) / FAN_OUT);
+			final boolean inner = (long) FAN_OUT * i + 1 < nodes;
+			final Class<? extends Resource> type = inner ? StringResource.class : FloatResource.class;
+			final Resource child = parent.addDecorator("n" + i, type);
+			if (inner)
+				((StringResource) child).setValue("node" + i);
+			else
+				((FloatResource) child).setValue(i);
+			created.add(child);
+		}
+		root.activate(true);
+		return root;
+	}
+
+	/**
+	 * Mirror of a resource, resembling the resource representation of the REST interface.
+	 */
+	@XmlRootElement(name = "resource")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class Node {
+
+		@XmlAttribute
+		public String name;
+		@XmlElement
+		public String type;
+		@XmlElement
+		public String path;
+		@XmlElement
+		public boolean active;
+		@XmlElement
+		public String value;
+		@XmlElement(name = "resource")
+		public List<Node> subresources = new ArrayList<>();
+
+		public Node() {
+		}
+
+		static Node of(Resource resource) {
+			final Node node = new Node();
+			node.name = resource.getName();
+			node.type = resource.getResourceType().getName();
+			node.path = resource.getPath();
+			node.active = resource.isActive();
+			if (resource instanceof FloatResource)
+				node.value = String.valueOf(((FloatResource) resource).getValue());
+			else if (resource instanceof StringResource)
+				node.value = ((StringResource) resource).getValue();
+			for (Resource sub : resource.getSubResources(false)) {
+				node.subresources.add(of(sub));
+			}
+			return node;
+		}
+
+		int count() {
+			int count = 1;
+			for (Node sub : subresources) {
+				count += sub.count();
+			}
+			return count;
+		}
+
+	}
+
+}
@@ -0,0 +1,288 @@
+package exam.tests;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ogema.core.administration.FrameworkClock;
+import org.ogema.core.application.Timer;
+import org.ogema.core.application.TimerListener;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+import org.ops4j.pax.exam.Option;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+import exam.support.bench.Histogram;
+import exam.support.ogema.OgemaOptions;
+
+/**
+ * Runs OGEMA with an accelerated simulation clock for a simulated duration of several days, with
+ * timers writing resources, and samples heap use, thread count, timer backlog and GC activity
+ * along the way, in order to reveal memory leaks and timer drift. The simulation factor is set
+ * at startup by the configurator.
+ * <br>
+ * The samples are written to <code>target/benchmarks/soak-&lt;factor&gt;x-&lt;timestamp&gt;.csv</code>;
+ * the summary contains the heap growth per simulated day, computed from the heap after garbage
+ * collection. The latency columns of the summary are the timer lateness in framework time.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #FACTOR_PROPERTY}: simulation factor, default 1000
+ * 	<li>{@value #DAYS_PROPERTY}: simulated duration in days, default 1
+ * 	<li>{@value #TIMERS_PROPERTY}: number of timers, with periods from 10s to 5min, default 100
+ * 	<li>{@value #SAMPLE_PROPERTY}: sampling interval in real seconds, default 5
+ * </ul>
+ */
+public class SimulationSoakBenchmark extends OgemaBenchmarkBase {
+
+	public static final String FACTOR_PROPERTY = "exam.benchmark.soak.factor";
+	public static final String DAYS_PROPERTY = "exam.benchmark.soak.days";
+	public static final String TIMERS_PROPERTY = "exam.benchmark.soak.timers";
+	public static final String SAMPLE_PROPERTY = "exam.benchmark.soak.sampleSeconds";
+	private static final String SIM_CLOCK_PID = "org.ogema.application.manager.impl.SimulationClock";
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+	private static final long MIN_PERIOD = TimeUnit.SECONDS.toMillis(10);
+
+	@Inject
+	private FrameworkClock clock;
+
+	private static int getFactor() {
+		return Benchmark.sizes(FACTOR_PROPERTY, 1000)[0];
+	}
+
+	@Override
+	protected Option[] additionalOptions() {
+		final String json = "{\"" + SIM_CLOCK_PID + "\": {\"simulationFactor\": " + getFactor() + "}, "
+				+ "\":configurator:version\": \"1\", \":configurator:symbolic-name\": \"soak\"}";
+		return new Option[] {
+				OgemaOptions.configuratorBundles(),
+				OgemaOptions.initialConfiguration(json)
+		};
+	}
+
+	@Test
+	public void soak() throws Exception {
+		final int factor = getFactor();
+		final int days = Benchmark.sizes(DAYS_PROPERTY, 1)[0];
+		final int timerCount = Benchmark.sizes(TIMERS_PROPERTY, 100)[0];
+		final long sampleMillis = TimeUnit.SECONDS.toMillis(Benchmark.sizes(SAMPLE_PROPERTY, 5)[0]);
+		Assert.assertEquals("Simulation factor not configured", factor, clock.getSimulationFactor(), 0.0001);
+		final BenchmarkReport report = new BenchmarkReport("soak", ctx)
+				.environment("simulationFactor", factor)
+				.environment("simulatedDays", days);
+		final StringResource root = appMan.getResourceManagement().createResource("soakRoot", StringResource.class);
+		final List<TimerStats> timers = new ArrayList<>(timerCount);
+		final List<Sample> samples = new ArrayList<>();
+		final Histogram lateness = new Histogram();
+		final long realStart = System.nanoTime();
+		try {
+			for (int i = 0; i < timerCount; i++) {
+				final FloatResource value = root.addDecorator("t" + i, FloatResource.class);
+				value.activate(false);
+				timers.add(new TimerStats(MIN_PERIOD * (1 + i % 30), value, lateness));
+			}
+			final long simStart = clock.getExecutionTime();
+			final long simEnd = simStart + days * DAY;
+			final Sample.Totals gcStart = Sample.gcTotals();
+			Sample.Totals gcPrevious = gcStart;
+			samples.add(new Sample(simStart, simStart, realStart, timers, gcPrevious));
+			while (clock.getExecutionTime() < simEnd) {
+				Thread.sleep(sampleMillis);
+				final Sample sample = new Sample(clock.getExecutionTime(), simStart, realStart, timers, gcPrevious);
+				gcPrevious = sample.gc;
+				samples.add(sample);
+				System.out.println("   " + sample);
+			}
+			long callbacks = 0;
+			int maxThreads = 0;
+			long maxBacklog = 0;
+			for (TimerStats timer : timers) {
+				callbacks += timer.calls.get();
+			}
+			for (Sample sample : samples) {
+				maxThreads = Math.max(maxThreads, sample.threads);
+				maxBacklog = Math.max(maxBacklog, sample.backlog);
+			}
+			final Sample last = samples.get(samples.size() - 1);
+			final Map<String, Object> params = new LinkedHashMap<>();
+			params.put("factor", factor);
+			params.put("days", days);
+			params.put("timers", timerCount);
+			final BenchmarkResult result = Benchmark.result("soak", params, (int) Math.min(Integer.MAX_VALUE, callbacks),
+					System.nanoTime() - realStart, lateness)
+				.metric("heapGrowthBytesPerDay", heapGrowthPerDay(samples))
+				.metric("heapAfterGcBytes", last.heapAfterGc)
+				.metric("maxThreads", maxThreads)
+				.metric("maxTimerBacklog", maxBacklog)
+				.metric("gcCount", last.gc.count - gcStart.count)
+				.metric("gcTimeMs", last.gc.timeMs - gcStart.timeMs);
+			report.add(result);
+		} finally {
+			timers.forEach(TimerStats::destroy);
+			root.delete();
+		}
+		writeSamples(factor, samples);
+		report.write();
+	}
+
+	private void writeSamples(int factor, List<Sample> samples) throws Exception {
+		final Path folder = Paths.get(System.getProperty(BenchmarkReport.DIR_PROPERTY, BenchmarkReport.DEFAULT_DIR));
+		final Path file = folder.resolve("soak-" + factor + "x-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".csv");
+		final List<String> lines = new ArrayList<>(samples.size() + 1);
+		lines.add(Sample.HEADER);
+		samples.forEach(s -> lines.add(s.toCsv()));
+		Files.createDirectories(folder);
+		Files.write(file, lines, StandardCharsets.UTF_8);
+		System.out.println("   Soak samples written to " + file);
+	}
+
+	// least squares slope of the heap after GC over the simulated time, ignoring the first 10% as warm-up
+	private static double heapGrowthPerDay(List<Sample> samples) {
+		final List<Sample> considered = samples.subList(samples.size() / 10, samples.size());
+		if (considered.size() < 2)
+			return Double.NaN;
+		double meanX = 0, meanY = 0;
+		for (Sample s : considered) {
+			meanX += s.simElapsed;
+			meanY += s.heapAfterGc;
+		}
+		meanX /= considered.size();
+		meanY /= considered.size();
+		double cov = 0, var = 0;
+		for (Sample s : considered) {
+			cov += (s.simElapsed - meanX) * (s.heapAfterGc - meanY);
+			var += (s.simElapsed - meanX) * (s.simElapsed - meanX);
+		}
+		return var == 0 ? Double.NaN : cov / var * DAY;
+	}
+
+	private final class TimerStats implements TimerListener {
+
+		final long period;
+		final long createdAt;
+		final FloatResource value;
+		final Histogram lateness;
+		final AtomicLong calls = new AtomicLong();
+		final Timer timer;
+
+		TimerStats(long period, FloatResource value, Histogram lateness) {
+			this.period = period;
+			this.value = value;
+			this.lateness = lateness;
+			this.createdAt = appMan.getFrameworkTime();
+			this.timer = appMan.createTimer(period, this);
+		}
+
+		@Override
+		public void timerElapsed(Timer timer) {
+			final long call = calls.incrementAndGet();
+			final long late = appMan.getFrameworkTime() - (createdAt + call * period);
+			lateness.record(TimeUnit.MILLISECONDS.toNanos(late));
+			value.setValue(call);
+		}
+
+		// the number of callbacks that should have happened by now, but did not
+		long backlog(long now) {
+			return Math.max(0, (now - createdAt) / period - calls.get());
+		}
+
+		void destroy() {
+			timer.destroy();
+		}
+
+	}
+
+	private static final class Sample {
+
+		static final String HEADER = "simTimeMs,simElapsedMs,realElapsedMs,heapUsedBytes,heapAfterGcBytes,threads,timerBacklog,gcCount,gcTimeMs";
+
+		final long simElapsed;
+		final long realElapsedMs;
+		final long simTime;
+		final long heapUsed;
+		final long heapAfterGc;
+		final int threads;
+		final long backlog;
+		final Totals gc;
+		final Totals gcDelta;
+
+		Sample(long simTime, long simStart, long realStart, List<TimerStats> timers, Totals gcPrevious) {
+			this.simTime = simTime;
+			this.simElapsed = simTime - simStart;
+			this.realElapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - realStart);
+			this.heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+			long afterGc = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				final MemoryUsage usage = pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+						? pool.getCollectionUsage() : null;
+				if (usage != null)
+					afterGc += usage.getUsed();
+			}
+			this.heapAfterGc = afterGc;
+			this.threads = ManagementFactory.getThreadMXBean().getThreadCount();
+			long backlog = 0;
+			for (TimerStats timer : timers) {
+				backlog += timer.backlog(simTime);
+			}
+			this.backlog = backlog;
+			this.gc = gcTotals();
+			this.gcDelta = new Totals(gc.count - gcPrevious.count, gc.timeMs - gcPrevious.timeMs);
+		}
+
+		static Totals gcTotals() {
+			long count = 0;
+			long time = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				count += Math.max(0, gc.getCollectionCount());
+				time += Math.max(0, gc.getCollectionTime());
+			}
+			return new Totals(count, time);
+		}
+
+		String toCsv() {
+			return simTime + "," + simElapsed + "," + realElapsedMs + "," + heapUsed + "," + heapAfterGc + ","
+					+ threads + "," + backlog + "," + gcDelta.count + "," + gcDelta.timeMs;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "Simulated %.2f days after %d s: heap %d MB (%d MB after GC), %d threads, timer backlog %d, %d GCs (%d ms)",
+					simElapsed / (double) DAY, realElapsedMs / 1000, heapUsed >> 20, heapAfterGc >> 20, threads, backlog, gcDelta.count, gcDelta.timeMs);
+		}
+
+		static final class Totals {
+
+			final long count;
+			final long timeMs;
+
+			Totals(long count, long timeMs) {
+				this.count = count;
+				this.timeMs = timeMs;
+			}
+
+		}
+
+	}
+
+}
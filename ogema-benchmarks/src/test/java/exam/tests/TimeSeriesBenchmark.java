@@ -0,0 +1,289 @@
+package exam.tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ogema.core.channelmanager.measurements.FloatValue;
+import org.ogema.core.channelmanager.measurements.Quality;
+import org.ogema.core.channelmanager.measurements.SampledValue;
+import org.ogema.core.recordeddata.RecordedDataConfiguration;
+import org.ogema.core.recordeddata.RecordedDataConfiguration.StorageType;
+import org.ogema.core.timeseries.ReadOnlyTimeSeries;
+import org.ogema.recordeddata.DataRecorder;
+import org.ogema.recordeddata.RecordedDataStorage;
+import org.ogema.tools.timeseries.implementations.FloatTreeTimeSeries;
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.Option;
+import org.osgi.framework.ServiceReference;
+
+import exam.support.ForkDirectories;
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+
+/**
+ * Ingestion throughput, on-disk size and range-query latency of the two time series backends
+ * in the OGEMA bundle set: the slotsdb {@link DataRecorder}, which stores logged resource values,
+ * and the in-memory {@link FloatTreeTimeSeries}. Every series represents one logged FloatResource
+ * (identified by a resource path, as in OGEMA) and receives one value per interval for the whole
+ * simulated period, in chronological order across all series, like the logging of a running system.
+ * The queries cover 1 day, 30 days and 1 year.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #SERIES_PROPERTY}: number of series, default 10
+ * 	<li>{@value #INTERVAL_PROPERTY}: seconds between two values of a series, default 60
+ * 	<li>{@value #DAYS_PROPERTY}: logged period in days, default 365
+ * 	<li>{@value #FLUSH_PROPERTY}: slotsdb flush period in milliseconds; by default the slotsdb default applies
+ * </ul>
+ */
+public class TimeSeriesBenchmark extends OgemaBenchmarkBase {
+
+	public static final String SERIES_PROPERTY = "exam.benchmark.timeseries.series";
+	public static final String INTERVAL_PROPERTY = "exam.benchmark.timeseries.intervalSeconds";
+	public static final String DAYS_PROPERTY = "exam.benchmark.timeseries.days";
+	public static final String FLUSH_PROPERTY = "exam.benchmark.timeseries.flushPeriod";
+	// system properties read by slotsdb on startup
+	private static final String SLOTSDB_FOLDER_PROPERTY = "org.ogema.recordeddata.slotsdb.dbfolder";
+	private static final String SLOTSDB_FLUSH_PROPERTY = "org.ogema.recordeddata.slotsdb.flushperiod";
+	private static final String SLOTSDB_FOLDER = "slotsdb-benchmark";
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+	private static final int[] WINDOW_DAYS = { 1, 30, 365 };
+	private static final int QUERIES = 20;
+
+	@Override
+	protected Option[] additionalOptions() {
+		final String flushPeriod = System.getProperty(FLUSH_PROPERTY);
+		return new Option[] {
+				CoreOptions.systemProperty(SLOTSDB_FOLDER_PROPERTY).value(slotsDbFolder().toString()),
+				CoreOptions.when(flushPeriod != null).useOptions(
+						CoreOptions.systemProperty(SLOTSDB_FLUSH_PROPERTY).value(flushPeriod)
+				)
+		};
+	}
+
+	private static Path slotsDbFolder() {
+		return ForkDirectories.dataDirectory().resolve(SLOTSDB_FOLDER).toAbsolutePath();
+	}
+
+	@Test
+	public void timeSeriesBackends() throws Exception {
+		final int series = Benchmark.sizes(SERIES_PROPERTY, 10)[0];
+		final long interval = TimeUnit.SECONDS.toMillis(Benchmark.sizes(INTERVAL_PROPERTY, 60)[0]);
+		final int days = Benchmark.sizes(DAYS_PROPERTY, 365)[0];
+		final BenchmarkReport report = new BenchmarkReport("timeseries", ctx)
+				.environment("series", series)
+				.environment("intervalSeconds", interval / 1000)
+				.environment("days", days)
+				.environment("slotsdbFlushPeriod", System.getProperty(SLOTSDB_FLUSH_PROPERTY, "default"));
+		final ServiceReference<DataRecorder> ref = ctx.getServiceReference(DataRecorder.class);
+		Assert.assertNotNull("DataRecorder service not found", ref);
+		final DataRecorder recorder = ctx.getService(ref);
+		try {
+			run(report, new SlotsDbBackend(recorder, series), series, interval, days);
+			run(report, new MemoryBackend(series), series, interval, days);
+		} finally {
+			ctx.ungetService(ref);
+		}
+		report.write();
+	}
+
+	private static void run(BenchmarkReport report, Backend backend, int series, long interval, int days) throws Exception {
+		try {
+			final Map<String, Object> params = new LinkedHashMap<>();
+			params.put("backend", backend.name());
+			// the logged period ends today, so that no retention limit of slotsdb applies
+			final long end = System.currentTimeMillis() / DAY * DAY;
+			final long start = end - days * DAY;
+			final long diskBefore = backend.diskBytes();
+			final long[] samples = new long[1];
+			final BenchmarkResult ingest = report.add(Benchmark.once("ingest", params, () -> {
+				for (long t = start; t < end; t += interval) {
+					final float value = (float) Math.sin(t / 3_600_000.0);
+					for (int s = 0; s < series; s++) {
+						backend.insert(s, t, value + s);
+					}
+					samples[0] += series;
+				}
+			}));
+			final double samplesPerSecond = samples[0] / (ingest.getNanosPerOp() / 1e9);
+			final long diskAfter = backend.awaitFlush();
+			final long diskBytes = diskAfter < 0 ? -1 : diskAfter - diskBefore;
+			ingest.metric("samples", samples[0])
+				.metric("samplesPerSecond", samplesPerSecond)
+				.metric("diskBytesPerSample", diskBytes < 0 ? Double.NaN : diskBytes / (double) samples[0]);
+			System.out.println(String.format("   %s: %d samples ingested, %.0f samples/s, %d bytes on disk",
+					backend.name(), samples[0], samplesPerSecond, diskBytes));
+			final Random random = new Random(days);
+			for (int windowDays : WINDOW_DAYS) {
+				if (windowDays > days)
+					continue;
+				final long window = windowDays * DAY;
+				final long expected = window / interval;
+				report.add(Benchmark.named("query-" + windowDays + "d")
+					.param("backend", backend.name())
+					.batchSize(QUERIES)
+					.recordLatency()
+					.run(i -> {
+						final long from = start + (long) (random.nextDouble() * (days * DAY - window));
+						final List<SampledValue> values = backend.series(i % series).getValues(from, from + window);
+						Assert.assertTrue("Too few values in window: " + values.size(), values.size() >= expected - 1);
+					}));
+			}
+		} finally {
+			backend.close();
+		}
+	}
+
+	private interface Backend {
+
+		String name();
+
+		void insert(int series, long timestamp, float value) throws Exception;
+
+		ReadOnlyTimeSeries series(int series);
+
+		/**
+		 * @return
+		 * 		the bytes on disk, or -1 if not applicable
+		 */
+		long diskBytes() throws IOException;
+
+		/**
+		 * Wait until all values have been written to disk.
+		 * @return
+		 * 		the bytes on disk, or -1 if not applicable
+		 */
+		long awaitFlush() throws Exception;
+
+		/**
+		 * Delete the stored values.
+		 */
+		void close();
+
+	}
+
+	private static final class SlotsDbBackend implements Backend {
+
+		private final DataRecorder recorder;
+		private final RecordedDataStorage[] storages;
+
+		SlotsDbBackend(DataRecorder recorder, int series) throws Exception {
+			this.recorder = recorder;
+			this.storages = new RecordedDataStorage[series];
+			final RecordedDataConfiguration config = new RecordedDataConfiguration();
+			config.setStorageType(StorageType.ON_VALUE_UPDATE);
+			for (int s = 0; s < series; s++) {
+				final String id = id(s);
+				recorder.deleteRecordedDataStorage(id);
+				storages[s] = recorder.createRecordedDataStorage(id, config);
+			}
+		}
+
+		private static String id(int series) {
+			return "timeseriesBenchmark/value" + series;
+		}
+
+		@Override
+		public String name() {
+			return "slotsdb";
+		}
+
+		@Override
+		public void insert(int series, long timestamp, float value) throws Exception {
+			storages[series].insertValue(new SampledValue(new FloatValue(value), timestamp, Quality.GOOD));
+		}
+
+		@Override
+		public ReadOnlyTimeSeries series(int series) {
+			return storages[series];
+		}
+
+		@Override
+		public long diskBytes() throws IOException {
+			final Path folder = Paths.get(System.getProperty(SLOTSDB_FOLDER_PROPERTY));
+			if (!Files.exists(folder))
+				return 0;
+			try (Stream<Path> files = Files.walk(folder)) {
+				return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+			}
+		}
+
+		// slotsdb writes asynchronously; wait until the folder size has not changed for two flush periods
+		@Override
+		public long awaitFlush() throws Exception {
+			final long pollMillis = Long.getLong(SLOTSDB_FLUSH_PROPERTY, 1000);
+			final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+			long previous = -1;
+			int stable = 0;
+			while (stable < 2 && System.nanoTime() < deadline) {
+				Thread.sleep(pollMillis);
+				final long size = diskBytes();
+				stable = size == previous ? stable + 1 : 0;
+				previous = size;
+			}
+			return previous;
+		}
+
+		@Override
+		public void close() {
+			for (int s = 0; s < storages.length; s++) {
+				recorder.deleteRecordedDataStorage(id(s));
+			}
+		}
+
+	}
+
+	private static final class MemoryBackend implements Backend {
+
+		private final FloatTreeTimeSeries[] series;
+
+		MemoryBackend(int series) {
+			this.series = new FloatTreeTimeSeries[series];
+			for (int s = 0; s < series; s++) {
+				this.series[s] = new FloatTreeTimeSeries();
+			}
+		}
+
+		@Override
+		public String name() {
+			return "memory-timeseries";
+		}
+
+		@Override
+		public void insert(int series, long timestamp, float value) {
+			this.series[series].addValue(timestamp, new FloatValue(value));
+		}
+
+		@Override
+		public ReadOnlyTimeSeries series(int series) {
+			return this.series[series];
+		}
+
+		@Override
+		public long diskBytes() {
+			return -1;
+		}
+
+		@Override
+		public long awaitFlush() {
+			return -1;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,113 @@
+package exam.tests;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ogema.core.application.Application;
+import org.ogema.core.model.Resource;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkComparison;
+import exam.support.bench.BenchmarkReport;
+import exam.support.ogema.lifecycle.AppHandle;
+import exam.support.ogema.lifecycle.AppLifecycle;
+
+/**
+ * Typical operations of an OGEMA app: resource access, app registration, service lookup and
+ * configuration updates. The secure-test execution runs the same workload with security enabled;
+ * whichever of the two runs last writes the comparison <code>security-overhead.csv</code>.
+ */
+public class WorkloadBenchmark extends OgemaBenchmarkBase {
+
+	private static final String SUITE = "workload";
+	private static final String SECURE_SUITE = "workload-secure";
+	private static final int RESOURCES = 1000;
+
+	@Test
+	public void securityOverhead() throws Exception {
+		final BenchmarkReport report = new BenchmarkReport(isSecure() ? SECURE_SUITE : SUITE, ctx);
+		resourceAccess(report);
+		appRegistration(report);
+		serviceLookup(report);
+		configUpdates(report);
+		report.write();
+		BenchmarkComparison.compare(SUITE, SECURE_SUITE, "security-overhead");
+	}
+
+	private void resourceAccess(BenchmarkReport report) throws Exception {
+		final StringResource root = appMan.getResourceManagement().createResource("workloadRoot", StringResource.class);
+		try {
+			final List<FloatResource> resources = new ArrayList<>(RESOURCES);
+			for (int i = 0; i < RESOURCES; i++) {
+				resources.add(root.addDecorator("v" + i, FloatResource.class));
+			}
+			final String[] paths = resources.stream().map(Resource::getPath).toArray(String[]::new);
+			report.add(Benchmark.named("resource-lookup")
+				.recordLatency()
+				.run(i -> Assert.assertNotNull(appMan.getResourceAccess().getResource(paths[i % RESOURCES]))));
+			report.add(Benchmark.named("resource-write")
+				.recordLatency()
+				.run(i -> resources.get(i % RESOURCES).setValue(i)));
+			final float[] sum = new float[1];
+			report.add(Benchmark.named("resource-read")
+				.recordLatency()
+				.run(i -> sum[0] += resources.get(i % RESOURCES).getValue()));
+		} finally {
+			root.delete();
+		}
+	}
+
+	private void appRegistration(BenchmarkReport report) throws Exception {
+		try (AppLifecycle apps = new AppLifecycle(ctx, 1)) {
+			report.add(Benchmark.named("app-registration")
+				.batchSize(20)
+				.recordLatency()
+				.run(i -> apps.start()
+						.thenCompose(AppHandle::stop)
+						.get(AppLifecycle.DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+		}
+	}
+
+	private void serviceLookup(BenchmarkReport report) throws Exception {
+		report.add(Benchmark.named("service-lookup")
+			.recordLatency()
+			.run(i -> {
+				final ServiceReference<ConfigurationAdmin> ref = ctx.getServiceReference(ConfigurationAdmin.class);
+				Assert.assertNotNull(ctx.getService(ref));
+				ctx.ungetService(ref);
+			}));
+		report.add(Benchmark.named("service-filter")
+			.recordLatency()
+			.run(i -> Assert.assertFalse(ctx.getServiceReferences(Application.class, "(objectClass=*)").isEmpty())));
+	}
+
+	private void configUpdates(BenchmarkReport report) throws Exception {
+		final ServiceReference<ConfigurationAdmin> ref = ctx.getServiceReference(ConfigurationAdmin.class);
+		final ConfigurationAdmin ca = ctx.getService(ref);
+		final Configuration cfg = ca.getConfiguration("exam.benchmark.workload");
+		try {
+			report.add(Benchmark.named("config-update")
+				.batchSize(200)
+				.recordLatency()
+				.run(i -> {
+					final Dictionary<String, Object> props = new Hashtable<>();
+					props.put("value", i);
+					cfg.update(props);
+				}));
+		} finally {
+			cfg.delete();
+			ctx.ungetService(ref);
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package exam.tests;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ogema.core.application.ApplicationManager;
+import org.ogema.core.model.simple.FloatResource;
+import org.ogema.core.model.simple.StringResource;
+import org.ogema.core.resourcemanager.ResourceValueListener;
+import org.ops4j.pax.exam.Configuration;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.osgi.framework.BundleContext;
+
+import exam.support.BenchmarkOptions;
+import exam.support.WarmTestContainerFactory;
+import exam.support.bench.Benchmark;
+import exam.support.bench.BenchmarkReport;
+import exam.support.bench.BenchmarkResult;
+import exam.support.bench.Histogram;
+import exam.support.ogema.OgemaOptions;
+import exam.support.ogema.lifecycle.AppHandle;
+import exam.support.ogema.lifecycle.AppLifecycle;
+
+/**
+ * Starts N apps at once, each of which creates its own resource subtree with a value listener
+ * on every resource. For every N the startup time, heap per app and thread count are reported,
+ * as well as the time until a value change has reached all listeners. The module runs this
+ * test in a forked and a native container, see the pom.
+ * <br>
+ * Configuration (system properties):
+ * <ul>
+ * 	<li>{@value #APPS_PROPERTY}: comma-separated numbers of apps, default 10,100,1000
+ * 	<li>{@value #RESOURCES_PROPERTY}: resources per app, default 10
+ * </ul>
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+@ExamFactory(WarmTestContainerFactory.class)
+public class AppScaleTest {
+
+	public static final String APPS_PROPERTY = "exam.benchmark.scale.apps";
+	public static final String RESOURCES_PROPERTY = "exam.benchmark.scale.resources";
+	public static final String CONTAINER_PROPERTY = "exam.benchmark.container";
+	private static final long TIMEOUT_SECONDS = 300;
+	private static final int LIFECYCLE_THREADS = 4;
+
+	@Inject
+	protected BundleContext ctx;
+
+	@Configuration
+	public Option[] configuration() {
+		return new Option[] {
+				OgemaOptions.ogemaConfiguration(),
+				BenchmarkOptions.benchmarkSupport()
+			};
+	}
+
+	private static String getContainer() {
+		return System.getProperty(CONTAINER_PROPERTY, "forked");
+	}
+
+	@Test
+	public void manyAppsCanBeStarted() throws Exception {
+		final int resources = Benchmark.sizes(RESOURCES_PROPERTY, 10)[0];
+		final BenchmarkReport report = new BenchmarkReport("app-scale-" + getContainer(), ctx)
+				.environment("container", getContainer())
+				.environment("resourcesPerApp", resources);
+		for (int apps : Benchmark.sizes(APPS_PROPERTY, 10, 100, 1000)) {
+			report.add(startApps(apps, resources));
+		}
+		report.write();
+	}
+
+	private BenchmarkResult startApps(int apps, int resources) throws Exception {
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		final long heapBefore = usedHeap();
+		final int threadsBefore = threads.getThreadCount();
+		final FloatResource[][] values = new FloatResource[apps][];
+		final CountDownLatch changes = new CountDownLatch(apps * resources);
+		try (AppLifecycle lifecycle = new AppLifecycle(ctx, LIFECYCLE_THREADS)) {
+			final long start = System.nanoTime();
+			final List<AppHandle> handles = lifecycle.startAll(apps, i -> appMan -> values[i] = createSubtree(appMan, i, resources, changes))
+					.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			final long startupNanos = System.nanoTime() - start;
+			final Histogram startLatency = new Histogram();
+			handles.forEach(app -> startLatency.record(app.getStartNanos()));
+			final int threadsRunning = threads.getThreadCount();
+			final long heapPerApp = (usedHeap() - heapBefore) / apps;
+
+			final long changeStart = System.nanoTime();
+			for (FloatResource[] appValues : values) {
+				for (FloatResource value : appValues) {
+					value.setValue(1);
+				}
+			}
+			Assert.assertTrue("Value listeners not called", changes.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			final long changeNanos = System.nanoTime() - changeStart;
+
+			for (int i = 0; i < apps; i++) {
+				handles.get(i).getAppManager().getResourceAccess().getResource(rootName(i)).delete();
+			}
+			final long stopStart = System.nanoTime();
+			lifecycle.stopAll().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			final long stopNanos = System.nanoTime() - stopStart;
+
+			final Map<String, Object> params = new HashMap<>();
+			params.put("apps", apps);
+			return Benchmark.result("app-startup", params, apps, startupNanos, startLatency)
+				.metric("heapPerAppBytes", heapPerApp)
+				.metric("threads", threadsRunning)
+				.metric("threadsAdded", threadsRunning - threadsBefore)
+				.metric("listenerRoundMs", changeNanos / 1_000_000.0)
+				.metric("stopMs", stopNanos / 1_000_000.0);
+		}
+	}
+
+	private static FloatResource[] createSubtree(ApplicationManager appMan, int app, int resources, CountDownLatch changes) {
+		final StringResource root = appMan.getResourceManagement().createResource(rootName(app), StringResource.class);
+		final ResourceValueListener<FloatResource> listener = resource -> changes.countDown();
+		final FloatResource[] values = new FloatResource[resources];
+		for (int i = 0; i < resources; i++) {
+			values[i] = root.addDecorator("v" + i, FloatResource.class);
+			values[i].addValueListener(listener);
+		}
+		root.activate(true);
+		return values;
+	}
+
+	private static String rootName(int app) {
+		return "scaleApp" + app;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+}
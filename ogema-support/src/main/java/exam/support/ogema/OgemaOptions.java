@@ -0,0 +1,174 @@
+package exam.support.ogema;
+
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.Option;
+import org.osgi.framework.Constants;
+
+import exam.support.BundleSet;
+import exam.support.ForkDirectories;
+import exam.support.JavaVersion;
+import exam.support.SupportBundles;
+import exam.support.ogema.config.ConfigurationUrlHandler;
+import exam.support.ogema.lifecycle.AppLifecycle;
+
+/**
+ * The bundles and options required to run OGEMA in a Pax Exam container. All OGEMA test modules
+ * provision the same bundle versions from here, instead of maintaining their own copies.
+ * Security and test specific options, such as initial configurations, remain in the test classes.
+ */
+public class OgemaOptions {
+
+	public static final String SLF4J_VERSION = "1.7.26";
+	public static final String OGEMA_VERSION = "2.2.0";
+	public static final String MOXY_VERSION = "2.7.4";
+	public static final String JACKSON_VERSION = "2.9.9";
+
+	// JAXB is no longer part of the JDK starting with Java 11
+	private static final BundleSet JAXB = new BundleSet();
+	private static final BundleSet OGEMA = new BundleSet();
+	private static final BundleSet CONFIGURATOR = new BundleSet();
+
+	static {
+		JAXB.add("com.sun.activation", "javax.activation", "1.2.0");
+		JAXB.add("javax.annotation", "javax.annotation-api", "1.3.2");
+		JAXB.add("javax.xml.bind", "jaxb-api", "2.4.0-b180830.0359");
+		JAXB.add("org.eclipse.persistence", "org.eclipse.persistence.asm", MOXY_VERSION);
+		JAXB.add("org.eclipse.persistence", "org.eclipse.persistence.core", MOXY_VERSION);
+		JAXB.add("org.eclipse.persistence", "org.eclipse.persistence.moxy", MOXY_VERSION);
+
+		OGEMA.add("org.apache.felix", "org.apache.felix.framework.security", "2.6.1");
+		OGEMA.add("org.ogema.ref-impl", "permission-admin", OGEMA_VERSION).startLevel(1);
+		OGEMA.add("org.apache.felix", "org.apache.felix.scr", "2.1.16");
+		OGEMA.add("org.apache.felix", "org.apache.felix.configadmin", "1.9.16");
+		OGEMA.add("org.apache.felix", "org.apache.felix.useradmin.filestore", "1.0.2");
+		OGEMA.add("org.apache.felix", "org.apache.felix.useradmin", "1.0.3");
+		OGEMA.add("org.osgi", "org.osgi.service.useradmin", "1.1.0");
+
+		// Jetty
+		OGEMA.add("org.eclipse.jetty", "jetty-servlets", "9.4.19.v20190610");
+		OGEMA.add("org.apache.felix", "org.apache.felix.http.servlet-api", "1.1.2");
+		OGEMA.add("org.apache.felix", "org.apache.felix.http.jetty", "4.0.10").start();
+
+		// slf4j
+		OGEMA.add("org.osgi", "org.osgi.service.log", "1.3.0");
+		OGEMA.add("org.slf4j", "slf4j-api", SLF4J_VERSION);
+		OGEMA.add("org.slf4j", "osgi-over-slf4j", SLF4J_VERSION);
+		OGEMA.add("org.slf4j", "slf4j-simple", SLF4J_VERSION).noStart();
+
+		// Jackson
+		OGEMA.add("com.fasterxml.jackson.core", "jackson-core", JACKSON_VERSION);
+		OGEMA.add("com.fasterxml.jackson.core", "jackson-annotations", JACKSON_VERSION);
+		OGEMA.add("com.fasterxml.jackson.core", "jackson-databind", JACKSON_VERSION);
+		OGEMA.add("com.fasterxml.jackson.module", "jackson-module-jaxb-annotations", JACKSON_VERSION);
+
+		// commons
+		OGEMA.add("commons-io", "commons-io", "2.6");
+		OGEMA.add("org.apache.commons", "commons-math3", "3.6.1");
+		OGEMA.add("commons-codec", "commons-codec", "1.12");
+		OGEMA.add("org.apache.commons", "commons-lang3", "3.9");
+		OGEMA.add("org.json", "json", "20180813");
+		OGEMA.add("com.google.guava", "guava", "27.0-jre");
+		OGEMA.add("org.ow2.asm", "asm", "7.1");
+
+		// OGEMA
+		OGEMA.add("org.ogema.core", "api", OGEMA_VERSION);
+		OGEMA.add("org.ogema.core", "models", OGEMA_VERSION);
+		OGEMA.add("org.ogema.tools", "memory-timeseries", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "administration", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "internal-api", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "non-secure-apploader", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "app-manager", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "resource-manager", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "resource-access-advanced", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "security", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "persistence", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "channel-manager", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "hardware-manager", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "recordeddata-slotsdb", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "util", OGEMA_VERSION);
+		OGEMA.add("org.ogema.ref-impl", "rest", OGEMA_VERSION);
+		OGEMA.add("org.ogema.tools", "resource-utils", OGEMA_VERSION);
+
+		OGEMA.add("org.ops4j.pax.tinybundles", "tinybundles", "3.0.0");
+		OGEMA.add("biz.aQute.bnd", "biz.aQute.bndlib", "3.5.0"); // v >= 4.0.0 not supported by tinybundles yet
+
+		CONFIGURATOR.add("org.apache.felix", "org.apache.felix.converter", "1.0.8");
+		CONFIGURATOR.add("org.apache.felix", "org.apache.felix.configurator", "1.0.10");
+		CONFIGURATOR.add("org.osgi", "org.osgi.util.function", "1.1.0");
+		CONFIGURATOR.add("org.osgi", "org.osgi.util.promise", "1.1.1");
+		CONFIGURATOR.add("org.osgi", "org.osgi.util.pushstream", "1.0.1");
+		CONFIGURATOR.add("org.glassfish", "javax.json", "1.1.4");
+	}
+
+	private OgemaOptions() {}
+
+	/**
+	 * The configuration shared by all OGEMA tests: a clean framework storage in the data folder
+	 * of the fork, the VM options required by OGEMA on the current Java version, the JUnit bundles
+	 * and the {@link #ogemaBundles() OGEMA bundles}. The VM options only take effect in a forked
+	 * container; the native tests set them in the surefire plugin instead.
+	 */
+	public static Option ogemaConfiguration() {
+		final int javaVersion = JavaVersion.get();
+		return CoreOptions.composite(
+				CoreOptions.cleanCaches(),
+				CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE).value(ForkDirectories.dataDirectory().resolve("osgi-storage").toString()),
+				CoreOptions.frameworkProperty(Constants.FRAMEWORK_STORAGE_CLEAN).value(Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT),
+				CoreOptions.frameworkProperty(Constants.FRAMEWORK_BSNVERSION).value(Constants.FRAMEWORK_BSNVERSION_MULTIPLE),
+				CoreOptions.vmOption("-ea"),
+				CoreOptions.when(javaVersion >= 9).useOptions(
+						CoreOptions.vmOption("--add-opens=java.base/jdk.internal.loader=ALL-UNNAMED")
+				),
+				CoreOptions.when(javaVersion == 9 || javaVersion == 10).useOptions(
+						CoreOptions.vmOption("--add-modules=java.xml.bind,java.xml.ws.annotation")
+				),
+				CoreOptions.when(javaVersion >= 11).useOptions(
+						CoreOptions.vmOption("-Djavax.xml.bind.JAXBContextFactory=org.eclipse.persistence.jaxb.JAXBContextFactory")
+				),
+				CoreOptions.junitBundles(),
+				ogemaBundles());
+	}
+
+	/**
+	 * @return
+	 * 		the OGEMA framework bundles, including JAXB and MOXy on Java 11 and above, and the
+	 * 		{@link AppLifecycle} for registering test apps
+	 */
+	public static Option ogemaBundles() {
+		if (JavaVersion.get() < 11)
+			return CoreOptions.composite(OGEMA.toOption(), lifecycleBundle());
+		return CoreOptions.composite(JAXB.toOption(), OGEMA.toOption(), lifecycleBundle());
+	}
+
+	private static Option lifecycleBundle() {
+		return SupportBundles.bundle("exam.support.ogema.lifecycle",
+				"org.ogema.core.application,org.osgi.framework;version=\"[1.7,2)\"",
+				"exam.support.ogema.lifecycle;version=\"1.0.0\"", AppLifecycle.class);
+	}
+
+	/**
+	 * @return
+	 * 		the Felix configurator bundles, which are not part of {@link #ogemaBundles()}
+	 */
+	public static Option configuratorBundles() {
+		return CONFIGURATOR.toOption();
+	}
+
+	/**
+	 * Initial configurations for the Felix configurator (see {@link #configuratorBundles()}), passed
+	 * in memory instead of via a file: the JSON is encoded in a URL of the {@link ConfigurationUrlHandler},
+	 * which is installed at start level 1.
+	 * @param json
+	 * 		the configurations in the configurator JSON format, i.e. property maps keyed by PID
+	 * @return
+	 * 		the URL handler bundle and the framework property <code>configurator.initial</code>
+	 */
+	public static Option initialConfiguration(String json) {
+		return CoreOptions.composite(
+				SupportBundles.activatorBundle("exam.support.ogema.config",
+					"org.osgi.framework;version=\"[1.7,2)\",org.osgi.service.url;version=\"[1.0,2)\"",
+					ConfigurationUrlHandler.class.getName(), ConfigurationUrlHandler.class).startLevel(1).start(),
+				CoreOptions.frameworkProperty("configurator.initial").value(ConfigurationUrlHandler.toUrl(json)));
+	}
+
+}
@@ -0,0 +1,91 @@
+package exam.support.ogema.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.url.AbstractURLStreamHandlerService;
+import org.osgi.service.url.URLConstants;
+import org.osgi.service.url.URLStreamHandlerService;
+
+/**
+ * A URL handler for the protocol {@value #PROTOCOL}, whose URLs carry their content
+ * Base64 encoded, e.g. <code>exam-config:eyJhIjoxfQ</code>. This allows to pass configuration
+ * files to the Felix configurator via the framework property <code>configurator.initial</code>,
+ * without writing them to disk. The encoded content contains neither quotes nor commas,
+ * hence it survives the command line of the forked container.<br>
+ * Packaged into a bundle of its own, see {@link exam.support.SupportBundles}, which starts at level 1,
+ * before the configurator, and imports the URL handler API in addition to the framework API.
+ */
+public class ConfigurationUrlHandler extends AbstractURLStreamHandlerService implements BundleActivator {
+
+	public static final String PROTOCOL = "exam-config";
+
+	private volatile ServiceRegistration<URLStreamHandlerService> registration;
+
+	/**
+	 * @param content
+	 * @return
+	 * 		a URL, which can be opened inside the container once this handler has been started
+	 */
+	public static String toUrl(String content) {
+		return PROTOCOL + ":" + Base64.getUrlEncoder().withoutPadding().encodeToString(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void start(BundleContext ctx) {
+		final Dictionary<String, Object> props = new Hashtable<>(2);
+		props.put(URLConstants.URL_HANDLER_PROTOCOL, new String[] { PROTOCOL });
+		registration = ctx.registerService(URLStreamHandlerService.class, this, props);
+	}
+
+	@Override
+	public void stop(BundleContext ctx) {
+		final ServiceRegistration<URLStreamHandlerService> registration = this.registration;
+		this.registration = null;
+		if (registration != null) {
+			try {
+				registration.unregister();
+			} catch (IllegalStateException e) { // already unregistered
+			}
+		}
+	}
+
+	@Override
+	public URLConnection openConnection(URL url) throws IOException {
+		final byte[] content;
+		try {
+			content = Base64.getUrlDecoder().decode(url.getPath());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid " + PROTOCOL + " URL: " + url, e);
+		}
+		return new URLConnection(url) {
+
+			@Override
+			public void connect() {
+				connected = true;
+			}
+
+			@Override
+			public InputStream getInputStream() {
+				return new ByteArrayInputStream(content);
+			}
+
+			@Override
+			public int getContentLength() {
+				return content.length;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,150 @@
+package exam.support.ogema.lifecycle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import org.ogema.core.application.Application;
+import org.ogema.core.application.ApplicationManager;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * An application registered by an {@link AppLifecycle}. The futures returned by {@link #started()}
+ * and {@link #stop()} complete when OGEMA calls {@link Application#start(ApplicationManager)} and
+ * {@link Application#stop(AppStopReason)}, respectively.
+ */
+public final class AppHandle {
+
+	private final int id;
+	private final Executor executor;
+	private final Consumer<ApplicationManager> onStart;
+	private final Runnable onStopped;
+	private final CompletableFuture<Void> registered = new CompletableFuture<>();
+	private final CompletableFuture<AppHandle> started = new CompletableFuture<>();
+	private final CompletableFuture<AppHandle> stopped = new CompletableFuture<>();
+	private final Application app = new Application() {
+
+		@Override
+		public void start(ApplicationManager appManager) {
+			AppHandle.this.appManager = appManager;
+			try {
+				if (onStart != null)
+					onStart.accept(appManager);
+				startedAt = System.nanoTime();
+				started.complete(AppHandle.this);
+			} catch (RuntimeException | Error e) {
+				startedAt = System.nanoTime();
+				started.completeExceptionally(e);
+			}
+		}
+
+		@Override
+		public void stop(AppStopReason reason) {
+			appManager = null;
+			stoppedAt = System.nanoTime();
+			if (stopped.complete(AppHandle.this))
+				onStopped.run();
+		}
+
+	};
+	private volatile ServiceRegistration<Application> registration;
+	private volatile ApplicationManager appManager;
+	private volatile boolean stopRequested;
+	private volatile long registeredAt = -1;
+	private volatile long startedAt = -1;
+	private volatile long stopRequestedAt = -1;
+	private volatile long stoppedAt = -1;
+
+	AppHandle(int id, Executor executor, Consumer<ApplicationManager> onStart, Runnable onStopped) {
+		this.id = id;
+		this.executor = executor;
+		this.onStart = onStart;
+		this.onStopped = onStopped;
+	}
+
+	void register(BundleContext ctx) {
+		executor.execute(() -> {
+			registeredAt = System.nanoTime();
+			try {
+				registration = ctx.registerService(Application.class, app, null);
+				registered.complete(null);
+			} catch (RuntimeException e) {
+				registered.completeExceptionally(e);
+				started.completeExceptionally(e);
+				if (stopped.complete(this))
+					onStopped.run();
+			}
+		});
+	}
+
+	/**
+	 * @return
+	 * 		completes once the app has been started
+	 */
+	public CompletableFuture<AppHandle> started() {
+		return started;
+	}
+
+	/**
+	 * Unregister the app; the service is unregistered on the executor of the {@link AppLifecycle}.
+	 * @return
+	 * 		completes once the app has been stopped
+	 */
+	public synchronized CompletableFuture<AppHandle> stop() {
+		if (stopRequested)
+			return stopped;
+		stopRequested = true;
+		registered.thenRun(() -> executor.execute(() -> {
+			stopRequestedAt = System.nanoTime();
+			try {
+				registration.unregister();
+			} catch (IllegalStateException e) { // already unregistered
+			}
+			// if the app has not been started yet, no stop callback follows
+			if (!started.isDone() && started.cancel(false) && stopped.complete(this))
+				onStopped.run();
+		}));
+		return stopped;
+	}
+
+	/**
+	 * @return
+	 * 		the app manager passed to the app, or null if the app is not running
+	 */
+	public ApplicationManager getAppManager() {
+		return appManager;
+	}
+
+	/**
+	 * @return
+	 * 		a number identifying the app within its {@link AppLifecycle}
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return
+	 * 		nanoseconds from the service registration until the start callback returned,
+	 * 		or -1 if the app has not been started
+	 */
+	public long getStartNanos() {
+		return startedAt < 0 || registeredAt < 0 ? -1 : startedAt - registeredAt;
+	}
+
+	/**
+	 * @return
+	 * 		nanoseconds from the service unregistration until the stop callback,
+	 * 		or -1 if the app has not been stopped
+	 */
+	public long getStopNanos() {
+		return stoppedAt < 0 || stopRequestedAt < 0 ? -1 : stoppedAt - stopRequestedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "AppHandle[" + id + (appManager != null ? ", running" : "") + "]";
+	}
+
+}
@@ -0,0 +1,160 @@
+package exam.support.ogema.lifecycle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import org.ogema.core.application.Application;
+import org.ogema.core.application.ApplicationManager;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Registers OGEMA {@link Application applications} for tests, without blocking the caller.
+ * Services are registered and unregistered on a dedicated executor; the returned futures
+ * complete when OGEMA has started or stopped the app.
+ * <pre>
+ * try (AppLifecycle lifecycle = new AppLifecycle(ctx)) {
+ * 	final AppHandle app = lifecycle.start().get(10, TimeUnit.SECONDS);
+ * 	app.getAppManager().getResourceManagement()...
+ * }
+ * </pre>
+ * {@link #close()} stops all apps that are still running. The start and stop latencies
+ * of each app are available from its {@link AppHandle}.
+ */
+public final class AppLifecycle implements AutoCloseable {
+
+	public static final long DEFAULT_TIMEOUT_SECONDS = 10;
+	private static final AtomicInteger lifecycleCount = new AtomicInteger();
+
+	private final BundleContext ctx;
+	private final ExecutorService executor;
+	private final AtomicInteger appCount = new AtomicInteger();
+	private final Set<AppHandle> apps = ConcurrentHashMap.newKeySet();
+
+	public AppLifecycle(BundleContext ctx) {
+		this(ctx, 2);
+	}
+
+	/**
+	 * @param ctx
+	 * @param threads
+	 * 		the number of threads registering and unregistering the apps
+	 */
+	public AppLifecycle(BundleContext ctx, int threads) {
+		this.ctx = ctx;
+		final int lifecycleId = lifecycleCount.incrementAndGet();
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			final Thread t = new Thread(r, "app-lifecycle-" + lifecycleId + "-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * @return
+	 * 		completes once the app has been started
+	 */
+	public CompletableFuture<AppHandle> start() {
+		return start(null);
+	}
+
+	/**
+	 * @param onStart
+	 * 		executed within {@link Application#start(ApplicationManager)}, e.g. to create resources
+	 * 		or listeners; may be null
+	 * @return
+	 * 		completes once the app has been started and onStart has returned
+	 */
+	public CompletableFuture<AppHandle> start(Consumer<ApplicationManager> onStart) {
+		final AppHandle[] handle = new AppHandle[1];
+		handle[0] = new AppHandle(appCount.incrementAndGet(), executor, onStart, () -> apps.remove(handle[0]));
+		apps.add(handle[0]);
+		handle[0].register(ctx);
+		return handle[0].started();
+	}
+
+	/**
+	 * Start an app and wait at most {@value #DEFAULT_TIMEOUT_SECONDS} seconds for it, e.g. in a
+	 * <code>@Before</code> method of a test.
+	 * @return
+	 * 		the app manager of the started app
+	 */
+	public ApplicationManager startApp() throws InterruptedException, ExecutionException, TimeoutException {
+		return start().get(DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS).getAppManager();
+	}
+
+	/**
+	 * Start several apps at once.
+	 * @param count
+	 * @param onStart
+	 * 		provides the start action for the app with the given index; may be null
+	 * @return
+	 * 		completes once all apps have been started
+	 */
+	public CompletableFuture<List<AppHandle>> startAll(int count, IntFunction<Consumer<ApplicationManager>> onStart) {
+		final List<CompletableFuture<AppHandle>> futures = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			futures.add(start(onStart == null ? null : onStart.apply(i)));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[count]))
+			.thenApply(v -> {
+				final List<AppHandle> handles = new ArrayList<>(count);
+				futures.forEach(f -> handles.add(f.join()));
+				return handles;
+			});
+	}
+
+	/**
+	 * @return
+	 * 		completes once all apps registered by this lifecycle have been stopped
+	 */
+	public CompletableFuture<Void> stopAll() {
+		final List<CompletableFuture<AppHandle>> futures = new ArrayList<>();
+		for (AppHandle app : apps) {
+			futures.add(app.stop());
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+
+	/**
+	 * @return
+	 * 		the apps which have been registered, but not stopped yet
+	 */
+	public Collection<AppHandle> getApps() {
+		return Collections.unmodifiableSet(apps);
+	}
+
+	/**
+	 * Stop all apps, waiting at most {@value #DEFAULT_TIMEOUT_SECONDS} seconds, and shut down the executor.
+	 * @throws IllegalStateException
+	 * 		if the apps could not be stopped in time
+	 */
+	@Override
+	public void close() {
+		try {
+			stopAll().get(DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			throw new IllegalStateException("App stop timed out", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("App stop failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}